@@ -0,0 +1,194 @@
+package application;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import application.result.ResultIndex;
+import application.result.Run;
+import application.result.RunArchive;
+import application.view.controller.ChartController;
+import application.view.controller.ChartData;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+/**
+ * Renders the reliability, cost and performance charts of every saved run in
+ * a directory to PNG files without showing a window:
+ *
+ * <pre>
+ * java application.BatchExport &lt;runs directory&gt; [output directory] [width] [height]
+ * </pre>
+ *
+ * A run is a result file (*.csv), a run archive (*.run) or a run directory
+ * holding a result file. Runs are read and prepared on a thread pool and the
+ * images are encoded there as well, only showing the data and taking the
+ * snapshots happens on the FX thread, with one set of charts reused for all
+ * the runs.
+ */
+public class BatchExport extends Application {
+
+	private static final int DEFAULT_WIDTH = 1200;
+	private static final int DEFAULT_HEIGHT = 400;
+
+	private ChartController chartController;
+	private VBox root;
+
+	@Override
+	public void start(Stage primaryStage) {
+		List<String> args = getParameters().getRaw();
+		if (args.isEmpty()) {
+			System.out.println("Usage: BatchExport <runs directory> [output directory] [width] [height]");
+			Platform.exit();
+			return;
+		}
+
+		final File runsDirectory = new File(args.get(0));
+		final File outputDirectory = new File(args.size() > 1 ? args.get(1) : args.get(0));
+		int width = args.size() > 2 ? Integer.parseInt(args.get(2)) : DEFAULT_WIDTH;
+		int height = args.size() > 3 ? Integer.parseInt(args.get(3)) : DEFAULT_HEIGHT;
+		outputDirectory.mkdirs();
+
+		createCharts(width, height);
+
+		final List<File> runs = findRuns(runsDirectory);
+		final AtomicInteger exported = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		for (final File run : runs) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						export(run, outputDirectory);
+						System.out.println("Exported " + run.getName() + " (" + exported.incrementAndGet() + "/"
+								+ runs.size() + ")");
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				Platform.exit();
+			}
+		}).start();
+	}
+
+	/**
+	 * Lay the charts out in a scene that is never shown, snapshots only need
+	 * the scene for styling and layout
+	 */
+	private void createCharts(int width, int height) {
+		AnchorPane reliabilityChartPane = new AnchorPane();
+		AnchorPane costChartPane = new AnchorPane();
+		AnchorPane performanceChartPane = new AnchorPane();
+		for (AnchorPane pane : new AnchorPane[] { reliabilityChartPane, costChartPane, performanceChartPane }) {
+			pane.setMinSize(width, height);
+			pane.setPrefSize(width, height);
+			pane.setMaxSize(width, height);
+		}
+
+		chartController = new ChartController(reliabilityChartPane, costChartPane, performanceChartPane,
+				new AnchorPane(), new AnchorPane());
+		chartController.getReliabilityChart().setAnimated(false);
+		chartController.getCostChart().setAnimated(false);
+		chartController.getPerformanceChart().setAnimated(false);
+		chartController.getReliabilityChart().getXAxis().setAnimated(false);
+		chartController.getCostChart().getXAxis().setAnimated(false);
+		chartController.getCostChart().getYAxis().setAnimated(false);
+		chartController.getPerformanceChart().getXAxis().setAnimated(false);
+		chartController.getPerformanceChart().getYAxis().setAnimated(false);
+
+		root = new VBox(reliabilityChartPane, costChartPane, performanceChartPane);
+		Scene scene = new Scene(root, width, height * 3);
+		scene.getStylesheets().add(getClass().getResource("view/application.css").toExternalForm());
+		root.applyCss();
+		root.layout();
+	}
+
+	private static List<File> findRuns(File directory) {
+		List<File> runs = new ArrayList<>();
+		File[] files = directory.listFiles();
+		if (files == null)
+			return runs;
+
+		for (File file : files) {
+			if (file.isDirectory() && new File(file, Run.RESULT_FILE).isFile())
+				runs.add(file);
+			else if (file.isFile() && file.getName().endsWith(RunArchive.EXTENSION))
+				runs.add(file);
+			else if (file.isFile() && file.getName().endsWith(".csv") && !file.getName().equals(Run.LOG_FILE))
+				runs.add(file);
+		}
+		return runs;
+	}
+
+	private void export(File run, File outputDirectory) throws Exception {
+		String path = run.isDirectory() ? new File(run, Run.RESULT_FILE).getPath() : run.getPath();
+		ResultIndex index = ResultIndex.open(path);
+		final ChartData data = ChartData.prepare(index, index.getMaxInvocation(), null);
+
+		// the charts are shared, so a run is shown and captured in one go
+		FutureTask<WritableImage[]> snapshots = new FutureTask<>(() -> {
+			chartController.show(data);
+			root.applyCss();
+			root.layout();
+			return new WritableImage[] { snapshot(chartController.getReliabilityChart()),
+					snapshot(chartController.getCostChart()), snapshot(chartController.getPerformanceChart()) };
+		});
+		Platform.runLater(snapshots);
+		WritableImage[] images = snapshots.get();
+
+		String name = nameOf(run);
+		write(images[0], new File(outputDirectory, name + "-reliability.png"));
+		write(images[1], new File(outputDirectory, name + "-cost.png"));
+		write(images[2], new File(outputDirectory, name + "-performance.png"));
+	}
+
+	private static WritableImage snapshot(Node chart) {
+		SnapshotParameters param = new SnapshotParameters();
+		param.setDepthBuffer(true);
+		return chart.snapshot(param, null);
+	}
+
+	private static void write(WritableImage image, File file) throws IOException {
+		BufferedImage tempImg = SwingFXUtils.fromFXImage(image, null);
+		ImageIO.write(tempImg, "png", file);
+	}
+
+	private static String nameOf(File run) {
+		String name = run.getName();
+		int dot = name.lastIndexOf('.');
+		return run.isFile() && dot > 0 ? name.substring(0, dot) : name;
+	}
+
+	public static void main(String[] args) {
+		launch(args);
+	}
+}
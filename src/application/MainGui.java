@@ -2,6 +2,7 @@ package application;
 
 import java.io.File;
 
+import application.log.Log;
 import application.utility.Utility;
 import application.view.controller.ApplicationController;
 import br.uece.travelapp.TravelPlannerApp;
@@ -17,15 +18,15 @@ import javafx.stage.WindowEvent;
 
 public class MainGui extends Application {
 
-	private static final String logFile = "results" + File.separator + "log.csv";
 	private static final String resultFile = "results" + File.separator + "result.csv";
+	private static final String logFile = "results" + File.separator + "log.csv";
 
 	@Override
 	public void start(Stage primaryStage) {
 		try {
 
-			Utility.createFile(logFile);
 			Utility.createFile(resultFile);
+			Log.initialize(logFile);
 
 			TravelPlannerApp travelPlannerApp = new TravelPlannerApp();
 
@@ -47,6 +48,7 @@ public class MainGui extends Application {
 			primaryStage.setOnCloseRequest(new EventHandler<WindowEvent>() {
 				@Override
 				public void handle(WindowEvent arg0) {
+					Log.stop();
 					System.exit(0);
 				}
 			});
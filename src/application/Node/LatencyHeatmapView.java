@@ -0,0 +1,129 @@
+package application.Node;
+
+import application.result.LatencyHeatmap;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * Heatmap of the response times of one service: invocation windows along the
+ * x axis, log-scaled latency buckets along the y axis and the number of
+ * response times as the colour of a cell. It paints the pre-bucketed counts,
+ * so a repaint costs the same for any length of run. Only the buckets between
+ * the lowest and highest one holding counts are shown.
+ */
+public class LatencyHeatmapView extends Region {
+
+	private static final double LEFT_MARGIN = 70;
+	private static final double BOTTOM_MARGIN = 25;
+	private static final double MARGIN = 10;
+
+	private Canvas canvas = new Canvas();
+
+	private LatencyHeatmap heatmap;
+	private int maxSteps;
+
+	public LatencyHeatmapView() {
+		getChildren().add(canvas);
+	}
+
+	/**
+	 * Show the counts of a heatmap over a run of maxSteps invocations
+	 *
+	 * @param heatmap
+	 *            the counts, null to show nothing
+	 */
+	public void setData(LatencyHeatmap heatmap, int maxSteps) {
+		this.heatmap = heatmap;
+		this.maxSteps = maxSteps;
+		repaint();
+	}
+
+	@Override
+	protected void layoutChildren() {
+		super.layoutChildren();
+		repaint();
+	}
+
+	public void repaint() {
+		double width = getWidth();
+		double height = getHeight();
+		canvas.setWidth(width);
+		canvas.setHeight(height);
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		gc.clearRect(0, 0, width, height);
+
+		double plotWidth = width - LEFT_MARGIN - MARGIN;
+		double plotHeight = height - BOTTOM_MARGIN - MARGIN;
+		if (heatmap == null || heatmap.getMaxCount() == 0 || plotWidth <= 0 || plotHeight <= 0)
+			return;
+
+		int lowest = LatencyHeatmap.BUCKETS;
+		int highest = -1;
+		for (int window = 0; window < heatmap.getWindows(); window++) {
+			for (int bucket = 0; bucket < LatencyHeatmap.BUCKETS; bucket++) {
+				if (heatmap.getCount(window, bucket) > 0) {
+					lowest = Math.min(lowest, bucket);
+					highest = Math.max(highest, bucket);
+				}
+			}
+		}
+
+		int windowWidth = heatmap.getWindowWidth();
+		double span = Math.max(maxSteps + 1, heatmap.getWindows() * windowWidth);
+		double cellWidth = windowWidth * plotWidth / span;
+		double cellHeight = plotHeight / (highest - lowest + 1);
+		double logMax = Math.log1p(heatmap.getMaxCount());
+
+		for (int window = 0; window < heatmap.getWindows(); window++) {
+			double x = LEFT_MARGIN + window * cellWidth;
+			for (int bucket = lowest; bucket <= highest; bucket++) {
+				int count = heatmap.getCount(window, bucket);
+				if (count == 0)
+					continue;
+				// blue for a few response times up to red for the most
+				double fraction = Math.log1p(count) / logMax;
+				gc.setFill(Color.hsb(240 * (1 - fraction), 0.85, 0.95));
+				double y = MARGIN + plotHeight - (bucket - lowest + 1) * cellHeight;
+				gc.fillRect(x, y, Math.max(1, cellWidth), Math.max(1, cellHeight));
+			}
+		}
+
+		paintAxes(gc, plotWidth, plotHeight, lowest, highest, cellHeight, span);
+	}
+
+	private void paintAxes(GraphicsContext gc, double plotWidth, double plotHeight, int lowest, int highest,
+			double cellHeight, double span) {
+		gc.setStroke(Color.GRAY);
+		gc.strokeRect(LEFT_MARGIN, MARGIN, plotWidth, plotHeight);
+
+		gc.setFill(Color.BLACK);
+		gc.setTextBaseline(VPos.CENTER);
+		gc.setTextAlign(TextAlignment.RIGHT);
+		// one label per doubling of the latency
+		for (int bucket = lowest; bucket <= highest + 1; bucket++) {
+			if (bucket != lowest && (bucket - 1) % LatencyHeatmap.BUCKETS_PER_DOUBLING != 0)
+				continue;
+			double y = MARGIN + plotHeight - (bucket - lowest) * cellHeight;
+			gc.fillText(format(LatencyHeatmap.getBucketLowerBound(bucket)), LEFT_MARGIN - 5, y);
+		}
+
+		gc.setTextBaseline(VPos.TOP);
+		double y = MARGIN + plotHeight + 5;
+		gc.setTextAlign(TextAlignment.LEFT);
+		gc.fillText("0", LEFT_MARGIN, y);
+		gc.setTextAlign(TextAlignment.CENTER);
+		gc.fillText("Invocations", LEFT_MARGIN + plotWidth / 2, y);
+		gc.setTextAlign(TextAlignment.RIGHT);
+		gc.fillText(String.valueOf((long) span - 1), LEFT_MARGIN + plotWidth, y);
+	}
+
+	private static String format(double latency) {
+		if (latency >= 1000)
+			return String.format("%.1f s", latency / 1000);
+		return String.format("%.0f ms", latency);
+	}
+}
@@ -0,0 +1,200 @@
+package application.Node;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import application.utility.ZoomPyramid;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.ScatterChart;
+import javafx.scene.paint.Color;
+
+/**
+ * Reliability chart drawn on a canvas instead of one node per invocation. The
+ * chart keeps its axes and legend handling, the outcomes are given as primitive
+ * columns and painted on a canvas covering the plot area. Only the invocations
+ * within the x axis bounds are painted and they are aggregated per pixel
+ * column: a column shows a failure as soon as one invocation in it failed. A
+ * full repaint reads the failures from a zoom pyramid per service, so it costs
+ * about one value per pixel column and service.
+ */
+public class ReliabilityTimeline extends ScatterChart<Number, String> {
+
+	private static final byte SUCCESS = 1;
+	private static final byte FAILURE = 2;
+
+	private static final double SUCCESS_HEIGHT = 20;
+	private static final double FAILURE_HEIGHT = 40;
+
+	private Canvas canvas = new Canvas();
+
+	private int size;
+	private int[] invocations = new int[0];
+	private String[] services = new String[0];
+	private boolean[] results = new boolean[0];
+	private Map<String, ZoomPyramid> failures = new HashMap<>();
+
+	// what is painted in every pixel column of every service row
+	private String[] rows = new String[0];
+	private byte[][] painted = new byte[0][];
+	private int paintedRows;
+
+	public ReliabilityTimeline(NumberAxis xAxis, CategoryAxis yAxis) {
+		super(xAxis, yAxis);
+		canvas.setManaged(false);
+		canvas.setMouseTransparent(true);
+		getPlotChildren().add(canvas);
+	}
+
+	/**
+	 * Replace the outcomes and repaint them, the columns are used as given and
+	 * hold the invocations in increasing order
+	 *
+	 * @param failures
+	 *            the same outcomes per service, 1 for a failure and 0 for a
+	 *            success
+	 */
+	public void setData(int[] invocations, String[] services, boolean[] results, int size,
+			Map<String, ZoomPyramid> failures) {
+		setColumns(invocations, services, results, size, failures);
+		repaint();
+	}
+
+	/**
+	 * Same as setData when the first rows are unchanged, only the rows added
+	 * since the last call are painted
+	 */
+	public void appendData(int[] invocations, String[] services, boolean[] results, int size,
+			Map<String, ZoomPyramid> failures) {
+		setColumns(invocations, services, results, size, failures);
+		paint(Math.min(paintedRows, size));
+	}
+
+	private void setColumns(int[] invocations, String[] services, boolean[] results, int size,
+			Map<String, ZoomPyramid> failures) {
+		this.invocations = invocations;
+		this.services = services;
+		this.results = results;
+		this.size = size;
+		this.failures = failures;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	protected void layoutPlotChildren() {
+		super.layoutPlotChildren();
+		repaint();
+	}
+
+	private void repaint() {
+		double width = xAxis().getWidth();
+		double height = yAxis().getHeight();
+		canvas.setWidth(width);
+		canvas.setHeight(height);
+		canvas.getGraphicsContext2D().clearRect(0, 0, width, height);
+
+		rows = yAxis().getCategories().toArray(new String[0]);
+		int columns = Math.max(0, (int) Math.ceil(width));
+		painted = new byte[rows.length][columns];
+
+		double lower = xAxis().getLowerBound();
+		double upper = xAxis().getUpperBound();
+		paintedRows = size;
+		if (columns == 0 || upper <= lower)
+			return;
+
+		double scale = columns / (upper - lower);
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+		ZoomPyramid.Columns aggregates = new ZoomPyramid.Columns(columns);
+		for (int row = 0; row < rows.length; row++) {
+			ZoomPyramid pyramid = failures.get(rows[row]);
+			if (pyramid == null)
+				continue;
+
+			pyramid.query(lower, Math.nextUp(upper), aggregates);
+			double y = yAxis().getDisplayPosition(rows[row]);
+			for (int column = 0; column < columns; column++) {
+				if (aggregates.getCount(column) == 0)
+					continue;
+				painted[row][column] = aggregates.getMax(column) > 0 ? FAILURE : SUCCESS;
+				fill(gc, column, y, painted[row][column], scale);
+			}
+		}
+	}
+
+	private void fill(GraphicsContext gc, double x, double y, byte state, double scale) {
+		// one invocation covers at least a pixel once zoomed in
+		if (state == FAILURE) {
+			double width = Math.max(1, scale / 2);
+			gc.setFill(Color.RED);
+			gc.fillRect(x - width / 2, y - FAILURE_HEIGHT / 2, width, FAILURE_HEIGHT);
+		} else {
+			double width = Math.max(1, scale / 3);
+			gc.setFill(Color.LIMEGREEN);
+			gc.fillRect(x - width / 2, y - SUCCESS_HEIGHT / 2, width, SUCCESS_HEIGHT);
+		}
+	}
+
+	private void paint(int from) {
+		NumberAxis xAxis = xAxis();
+		CategoryAxis yAxis = yAxis();
+		double lower = xAxis.getLowerBound();
+		double upper = xAxis.getUpperBound();
+		int columns = painted.length > 0 ? painted[0].length : 0;
+		if (columns == 0 || upper <= lower) {
+			paintedRows = size;
+			return;
+		}
+
+		double scale = columns / (upper - lower);
+		GraphicsContext gc = canvas.getGraphicsContext2D();
+
+		int row = -1;
+		String rowService = null;
+		for (int i = from; i < size; i++) {
+			if (invocations[i] > upper)
+				break;
+			if (invocations[i] < lower)
+				continue;
+
+			if (!services[i].equals(rowService)) {
+				rowService = services[i];
+				row = rowOf(rowService);
+			}
+			if (row < 0)
+				continue;
+
+			double x = (invocations[i] - lower) * scale;
+			int column = Math.min(columns - 1, (int) x);
+			byte state = results[i] ? SUCCESS : FAILURE;
+			if (painted[row][column] >= state && scale <= 1)
+				continue;
+			painted[row][column] = (byte) Math.max(painted[row][column], state);
+
+			if (state == FAILURE || painted[row][column] == SUCCESS)
+				fill(gc, x, yAxis.getDisplayPosition(rowService), state, scale);
+		}
+		paintedRows = size;
+	}
+
+	private int rowOf(String service) {
+		for (int i = 0; i < rows.length; i++) {
+			if (rows[i].equals(service))
+				return i;
+		}
+		return -1;
+	}
+
+	private NumberAxis xAxis() {
+		return (NumberAxis) getXAxis();
+	}
+
+	private CategoryAxis yAxis() {
+		return (CategoryAxis) getYAxis();
+	}
+}
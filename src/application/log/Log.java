@@ -1,85 +1,252 @@
 package application.log;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.RandomAccessFile;
-import java.nio.channels.FileLock;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import application.log.LogSegments.Segment;
+import javafx.application.Platform;
 
+/**
+ * The application log, kept in a file and in logData for the log dialog.
+ *
+ * addLog only publishes the entry into a pre-allocated ring buffer: it claims
+ * a slot, stores the time and the two strings and marks the slot as published,
+ * without locking or allocating. A single consumer thread formats the times,
+ * writes the entries to the file in batches and refreshes logData once per
+ * batch. The producer only waits when the ring is full, that is when entries
+ * come faster than they can be written for a while.
+ *
+ * The file is split into time segments next to the log file given to
+ * initialize, see LogSegments. logData pages through all of them, the log
+ * dialog shows the entries of a LogQuery on top of it. logIndex indexes the
+ * entries of the last day at first for the title and text filters, index
+ * makes it follow another time range.
+ */
 public class Log {
-	
-	public static ObservableList<LogEntry> logData = FXCollections.observableArrayList();
-	private static PrintWriter out;
-	private static String logFile;
 
+	private static final int CAPACITY = 1 << 13;
+	private static final int MASK = CAPACITY - 1;
+
+	// entries written before the file is flushed
+	private static final int BATCH_SIZE = 1024;
+
+	// longest pause of the consumer when the ring is empty
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+	// entries shown and indexed when no time range is asked for
+	public static final long RECENT = TimeUnit.DAYS.toMillis(1);
+
+	public static PagedLog logData = new PagedLog();
+	public static LogIndex logIndex = new LogIndex();
+	private static LogSegments segments;
+
+	private static final long[] times = new long[CAPACITY];
+	private static final String[] titles = new String[CAPACITY];
+	private static final String[] messages = new String[CAPACITY];
+	// the sequence last published in each slot
+	private static final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+
+	private static final AtomicLong head = new AtomicLong();
+	private static final AtomicLong tail = new AtomicLong();
+
+	// the segments pruned when logIndex was last told about it
+	private static int pruned;
+
+	private static Thread consumer;
+	private static volatile boolean running;
+	private static volatile boolean clearRequested;
+
+	static {
+		for (int slot = 0; slot < CAPACITY; slot++)
+			published.set(slot, -1);
+	}
+
+	/**
+	 * @param file
+	 *            the log file of earlier versions, its entries are moved into
+	 *            the segments in a log directory next to it. Nothing is done
+	 *            if the log is running already.
+	 */
 	public static void initialize(String file) {
+		if (running)
+			return;
+		File logFile = new File(file).getAbsoluteFile();
+		segments = new LogSegments(new File(logFile.getParentFile(), "log"));
 		try {
-			logFile = file;
-			out = new PrintWriter(new BufferedWriter(new FileWriter(logFile, true)));
-			readFromFile(logFile);
+			segments.migrate(logFile);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		pruned = segments.getPruned();
+		logIndex.open(segments, System.currentTimeMillis() - RECENT, Long.MAX_VALUE);
+		logData.open(segments);
+
+		running = true;
+		consumer = new Thread(Log::consume, "log-writer");
+		consumer.setDaemon(true);
+		consumer.start();
 	}
 
+	/**
+	 * Write the entries still in the ring and close the file
+	 */
 	public static void stop() {
-		out.close();
+		running = false;
+		if (consumer == null)
+			return;
+		LockSupport.unpark(consumer);
+		try {
+			consumer.join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
 	}
 
+	/**
+	 * Entries logged before initialize or after stop are dropped, as well as
+	 * the entries still waiting for room in the ring when stop is called
+	 */
 	public static void addLog(String title, String message) {
-		SimpleDateFormat dataFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-		Date date = new Date();
-		String time = dataFormat.format(date).toString();
+		if (!running)
+			return;
+
+		long sequence = head.getAndIncrement();
+		while (sequence - tail.get() >= CAPACITY) {
+			// the slot still holds an entry the consumer may never get to
+			if (!running)
+				return;
+			Thread.yield();
+		}
+
+		int slot = (int) sequence & MASK;
+		times[slot] = System.currentTimeMillis();
+		titles[slot] = title;
+		messages[slot] = message;
+		published.lazySet(slot, sequence);
+	}
 
-		logData.add(new LogEntry(time, title, message));
-		out.println(time + "," + title + "," + message);
+	/**
+	 * Make logIndex index the entries between from and to, both in epoch ms and
+	 * inclusive, instead of the ones it indexes now
+	 */
+	public static void index(long from, long to) {
+		if (segments != null)
+			logIndex.open(segments, from, to);
 	}
 
+	/**
+	 * Write the whole log, all segments, into one file
+	 */
+	public static void export(File target) throws IOException {
+		if (segments == null)
+			throw new IOException("The log was not initialized");
+		segments.copyTo(target);
+	}
+
+	/**
+	 * Empty the log segments and logData, the entries logged before are
+	 * dropped once the consumer gets to it
+	 */
 	public static void clear() {
-		try {
-			File file = new File(logFile);
-			FileLock lock = new RandomAccessFile(file, "rw").getChannel().lock();
-
-			if (lock != null) {
-				file.delete();
-				file.createNewFile();
-				lock.release();
-				logData.clear();
+		clearRequested = true;
+		if (consumer != null)
+			LockSupport.unpark(consumer);
+	}
+
+	private static void consume() {
+		long second = Long.MIN_VALUE;
+		String time = null;
+		long next = tail.get();
+		// the times are taken after the slots are claimed, so they may come
+		// slightly out of order; the segments are searched assuming they are not
+		long last = Long.MIN_VALUE;
+		List<Segment> written = segments.overlapping(Long.MIN_VALUE, Long.MAX_VALUE);
+		if (!written.isEmpty())
+			last = written.get(written.size() - 1).getLast();
+
+		while (true) {
+			boolean stopping = !running;
+			int count = 0;
+			while (count < BATCH_SIZE && published.get((int) next & MASK) == next) {
+				int slot = (int) next & MASK;
+				last = Math.max(last, times[slot]);
+				// the formatted time changes once a second at most
+				if (last / 1000 != second) {
+					second = last / 1000;
+					time = LogSegments.TIME_FORMAT.format(Instant.ofEpochMilli(last));
+				}
+				write(last, time + "," + titles[slot] + "," + messages[slot]);
+				titles[slot] = null;
+				messages[slot] = null;
+				tail.lazySet(++next);
+				count++;
+			}
+
+			if (count > 0)
+				publish();
+
+			if (clearRequested) {
+				clearRequested = false;
+				truncate();
 			}
 
-		} catch (Exception e) {
+			if (count == BATCH_SIZE)
+				continue;
+			if (stopping)
+				break;
+			LockSupport.parkNanos(IDLE_NANOS);
+		}
+
+		try {
+			segments.close();
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
-	private static void readFromFile(String logFile) {
+	private static void write(long time, String line) {
 		try {
-			File file = new File(logFile);
-			if (!file.exists()) {
-				file.createNewFile();
-			}
+			segments.append(time, line);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
 
-			BufferedReader br = new BufferedReader(new FileReader(logFile));
-			String line;
-			while ((line = br.readLine()) != null) {
-				String[] strs = line.split(",");
-				if (strs.length == 3) {
-					logData.add(new LogEntry(strs[0], strs[1], strs[2]));
-				}
-			}
-			br.close();
-		} catch (Exception e) {
+	/**
+	 * Flush the batch to the segments and let logData pick it up in one go
+	 */
+	private static void publish() {
+		try {
+			segments.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		// rows are numbered from the oldest segment, the index starts again
+		// before logData hands out the new numbers
+		if (segments.getPruned() != pruned) {
+			pruned = segments.getPruned();
+			logIndex.reset();
+		} else {
+			logIndex.update();
+		}
+		Platform.runLater(logData::refresh);
+	}
+
+	private static void truncate() {
+		try {
+			segments.clear();
+		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		logIndex.reset();
+		// queued after the batches already handed over
+		Platform.runLater(logData::refresh);
 	}
 
 }
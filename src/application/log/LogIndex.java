@@ -0,0 +1,412 @@
+package application.log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import application.log.LogSegments.Segment;
+
+/**
+ * Index of the entries logged in a time range, by title and by trigram of the
+ * lower-cased title and message. Every entry is listed under its title and
+ * under each sequence of three characters of its title and message, so a
+ * title or a filter text of three characters or more only has to be checked
+ * against the entries listed under all of them instead of against every entry.
+ *
+ * An indexer thread reads the entries of the range from the segments once
+ * when the range is opened, then follows the lines flushed by the log writer
+ * as it is told about them by update. The entries are numbered like the rows
+ * of a PagedLog, the rows indexed are the ones between getStart and getEnd of
+ * a Result. Once the indexer has caught up after the range was opened or
+ * reset, the rebuild listeners are called on the indexer thread.
+ */
+public class LogIndex {
+
+	public static final int GRAM = 3;
+
+	// entries indexed under one lock
+	private static final int BATCH_SIZE = 1024;
+
+	// longest pause of the indexer when it is done with the flushed lines
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * The rows of the entries holding a title or trigram, in increasing order
+	 */
+	private static class Postings {
+
+		int[] rows = new int[4];
+		int size;
+
+		void add(int row) {
+			// an entry holding the trigram more than once is listed once
+			if (size > 0 && rows[size - 1] == row)
+				return;
+			if (size == rows.length)
+				rows = Arrays.copyOf(rows, size + (size >> 1));
+			rows[size++] = row;
+		}
+	}
+
+	/**
+	 * The rows that may match a query, among the rows indexed
+	 */
+	public static class Result {
+
+		private final int[] rows;
+		private final int start;
+		private final int end;
+
+		Result(int[] rows, int start, int end) {
+			this.rows = rows;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return the rows with the title and every trigram of the text, in
+		 *         increasing order. They hold the text itself when it is GRAM
+		 *         characters long, other texts have to be checked.
+		 */
+		public int[] getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return the first row indexed
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * @return the row after the last one indexed, the rows outside of
+		 *         start and end have to be checked
+		 */
+		public int getEnd() {
+			return end;
+		}
+	}
+
+	private final Map<Long, Postings> postings = new HashMap<>();
+	private final Map<String, Postings> titles = new HashMap<>();
+	private int start = -1;
+	private int end;
+	// changed with the range, batches read for another range are dropped
+	private int generation;
+
+	private LogSegments segments;
+	private long from;
+	private long to;
+
+	private Thread indexer;
+	private final List<Runnable> rebuildListeners = new CopyOnWriteArrayList<>();
+
+	// where the indexer is in the log, only used by the indexer thread
+	private int readGeneration = -1;
+	private int rebuiltGeneration = -1;
+	private Segment first;
+	private Segment segment;
+	private MappedByteBuffer buffer;
+	private int line;
+	private int position;
+	private int row;
+	private long time;
+	private int batchStart;
+	private final LogTime logTime = new LogTime();
+
+	/**
+	 * Index the entries between from and to, both in epoch ms and inclusive,
+	 * and the ones flushed in that range later on
+	 */
+	public synchronized void open(LogSegments segments, long from, long to) {
+		if (segments == this.segments && from == this.from && to == this.to)
+			return;
+		this.segments = segments;
+		this.from = from;
+		this.to = to;
+		reset();
+
+		if (indexer == null) {
+			indexer = new Thread(this::run, "log-indexer");
+			indexer.setDaemon(true);
+			indexer.start();
+		}
+	}
+
+	/**
+	 * Drop the entries indexed so far and index the range again, for instance
+	 * after the segments were cleared
+	 */
+	public synchronized void reset() {
+		postings.clear();
+		titles.clear();
+		start = -1;
+		end = 0;
+		generation++;
+		update();
+	}
+
+	public void addRebuildListener(Runnable listener) {
+		rebuildListeners.add(listener);
+	}
+
+	public void removeRebuildListener(Runnable listener) {
+		rebuildListeners.remove(listener);
+	}
+
+	/**
+	 * Let the indexer know lines were flushed
+	 */
+	public void update() {
+		if (indexer != null)
+			LockSupport.unpark(indexer);
+	}
+
+	/**
+	 * @return the titles of the entries indexed, in order
+	 */
+	public synchronized List<String> getTitles() {
+		List<String> list = new ArrayList<>(titles.keySet());
+		Collections.sort(list);
+		return list;
+	}
+
+	/**
+	 * @param title
+	 *            the title the entries must have, or null
+	 * @param text
+	 *            the text the entries must hold in their title or message,
+	 *            ignoring case, or null
+	 * @return the rows that may match, or null when neither the title nor the
+	 *         text narrow them down and every row has to be checked
+	 */
+	public synchronized Result search(String title, String text) {
+		List<Postings> lists = new ArrayList<>();
+		if (title != null)
+			lists.add(titles.get(title));
+
+		String lower = text != null ? text.toLowerCase() : "";
+		for (int i = 0; i + GRAM <= lower.length(); i++) {
+			Postings list = postings.get(key(lower, i));
+			if (!lists.contains(list))
+				lists.add(list);
+		}
+		if (lists.isEmpty())
+			return null;
+		if (lists.contains(null))
+			return new Result(new int[0], Math.max(start, 0), end);
+
+		// the shortest list first, the others are only searched
+		lists.sort(Comparator.comparingInt((Postings list) -> list.size));
+
+		int[] rows = Arrays.copyOf(lists.get(0).rows, lists.get(0).size);
+		int count = rows.length;
+		for (int i = 1; i < lists.size() && count > 0; i++)
+			count = retain(rows, count, lists.get(i));
+		return new Result(Arrays.copyOf(rows, count), Math.max(start, 0), end);
+	}
+
+	/**
+	 * Keep the first count rows that are in the list as well
+	 *
+	 * @return the number of rows kept
+	 */
+	private static int retain(int[] rows, int count, Postings list) {
+		int kept = 0;
+		int low = 0;
+		for (int i = 0; i < count && low < list.size; i++) {
+			int found = Arrays.binarySearch(list.rows, low, list.size, rows[i]);
+			if (found >= 0) {
+				rows[kept++] = rows[i];
+				low = found + 1;
+			} else {
+				low = -found - 1;
+			}
+		}
+		return kept;
+	}
+
+	private static long key(String text, int i) {
+		return ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+	}
+
+	private void add(String text, int row) {
+		String lower = text.toLowerCase();
+		for (int i = 0; i + GRAM <= lower.length(); i++) {
+			Long key = key(lower, i);
+			Postings list = postings.get(key);
+			if (list == null) {
+				list = new Postings();
+				postings.put(key, list);
+			}
+			list.add(row);
+		}
+	}
+
+	/**
+	 * Index the batch, its entries are on the rows following first
+	 */
+	private synchronized boolean add(int generation, int first, List<String[]> batch) {
+		if (generation != this.generation)
+			return false;
+		if (start < 0)
+			start = first;
+		int row = first;
+		for (String[] entry : batch) {
+			Postings list = titles.get(entry[0]);
+			if (list == null) {
+				list = new Postings();
+				titles.put(entry[0], list);
+			}
+			list.add(row);
+			add(entry[0], row);
+			add(entry[1], row);
+			row++;
+		}
+		end = row;
+		return true;
+	}
+
+	private void run() {
+		List<String[]> batch = new ArrayList<>();
+		while (true) {
+			boolean again = false;
+			try {
+				again = index(batch);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			if (!again) {
+				rebuilt();
+				LockSupport.parkNanos(IDLE_NANOS);
+			}
+		}
+	}
+
+	/**
+	 * Tell the listeners the first time the indexer is done with the lines
+	 * flushed in a range
+	 */
+	private void rebuilt() {
+		synchronized (this) {
+			if (segments == null || readGeneration != generation || rebuiltGeneration == generation)
+				return;
+			rebuiltGeneration = generation;
+		}
+		for (Runnable listener : rebuildListeners)
+			listener.run();
+	}
+
+	/**
+	 * Index the lines flushed since the last call
+	 *
+	 * @return whether the range changed and has to be read from the start
+	 */
+	private boolean index(List<String[]> batch) {
+		LogSegments segments;
+		long from;
+		long to;
+		int generation;
+		synchronized (this) {
+			segments = this.segments;
+			from = this.from;
+			to = this.to;
+			generation = this.generation;
+		}
+		if (segments == null)
+			return false;
+
+		// the rows are numbered over all the segments, like in PagedLog
+		List<Segment> all = segments.overlapping(Long.MIN_VALUE, Long.MAX_VALUE);
+		int current = segment != null ? all.indexOf(segment) : 0;
+		if (generation != readGeneration || current < 0
+				|| (first != null && (all.isEmpty() || all.get(0) != first))) {
+			// a new range, or segments were pruned or cleared under it
+			if (generation == readGeneration)
+				reset();
+			synchronized (this) {
+				readGeneration = this.generation;
+			}
+			first = null;
+			segment = null;
+			buffer = null;
+			row = 0;
+			return true;
+		}
+		if (all.isEmpty())
+			return false;
+		first = all.get(0);
+
+		for (int i = current; i < all.size(); i++) {
+			if (all.get(i) != segment) {
+				segment = all.get(i);
+				buffer = null;
+				line = 0;
+				position = 0;
+				time = segment.getFirst();
+			}
+			int lines = segment.getFlushedLines();
+			if (line >= lines)
+				continue;
+			if (segment.getFirst() > to)
+				break;
+			if (segment.getLast() < from && i < all.size() - 1) {
+				// older than the range and done with, skipped without reading
+				row += lines - line;
+				line = lines;
+				continue;
+			}
+
+			try {
+				if (buffer == null || buffer.capacity() < segments.getFile(segment).length())
+					buffer = segments.map(segment);
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+
+			while (line < lines && position < buffer.capacity()) {
+				int end = position;
+				while (end < buffer.capacity() && buffer.get(end) != '\n')
+					end++;
+				time = logTime.parse(buffer, position, end, time);
+				byte[] bytes = null;
+				if (time >= from && time <= to) {
+					bytes = new byte[end - position];
+					for (int j = 0; j < bytes.length; j++)
+						bytes[j] = buffer.get(position + j);
+				}
+				position = Math.min(end + 1, buffer.capacity());
+				line++;
+				row++;
+				if (bytes == null)
+					continue;
+
+				// the rows of the range follow each other, the times are in order
+				if (batch.isEmpty())
+					batchStart = row - 1;
+				String[] strs = new String(bytes).trim().split(",", 3);
+				batch.add(new String[] { strs.length > 1 ? strs[1] : "", strs.length > 2 ? strs[2] : "" });
+				if (batch.size() == BATCH_SIZE && !flush(generation, batch))
+					return true;
+			}
+		}
+		return !flush(generation, batch);
+	}
+
+	private boolean flush(int generation, List<String[]> batch) {
+		boolean added = batch.isEmpty() || add(generation, batchStart, batch);
+		batch.clear();
+		return added;
+	}
+}
@@ -0,0 +1,68 @@
+package application.log;
+
+/**
+ * What the log dialog shows: the entries of a time range, with a title and
+ * holding a text. The time range is resolved to rows first, the title and the
+ * text are only looked for in those rows.
+ */
+public class LogQuery {
+
+	private final long from;
+	private final long to;
+	private final String title;
+	private final String text;
+	private final String lowerText;
+
+	/**
+	 * @param from
+	 *            in epoch ms, inclusive
+	 * @param to
+	 *            in epoch ms, inclusive
+	 * @param title
+	 *            the title of the entries, or null for any title
+	 * @param text
+	 *            the text in the title or message of the entries, ignoring
+	 *            case, or null or empty for any text
+	 */
+	public LogQuery(long from, long to, String title, String text) {
+		this.from = from;
+		this.to = to;
+		this.title = title;
+		this.text = text != null ? text : "";
+		this.lowerText = this.text.toLowerCase();
+	}
+
+	public long getFrom() {
+		return from;
+	}
+
+	public long getTo() {
+		return to;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return whether the entries of the time range are filtered any further
+	 */
+	public boolean isFiltered() {
+		return title != null || !text.isEmpty();
+	}
+
+	/**
+	 * @return whether the entry has the title and holds the text, its time is
+	 *         not checked
+	 */
+	public boolean matches(LogEntry entry) {
+		if (title != null && !title.equals(entry.getTitle()))
+			return false;
+		return lowerText.isEmpty() || entry.getTitle().toLowerCase().contains(lowerText)
+				|| entry.getMessage().toLowerCase().contains(lowerText);
+	}
+}
@@ -0,0 +1,164 @@
+package application.log;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableListBase;
+
+/**
+ * The entries of a PagedLog matching a LogQuery. The time range of the query
+ * is first turned into the rows between two binary searches on the times of
+ * the log; without a title or text those rows are shown as they are. Otherwise
+ * the rows to check come from the LogIndex, only the rows of the range it has
+ * not indexed and the rows appended to the log afterwards are checked one by
+ * one. Any other change of the log runs the query again, and so does the
+ * index when it is done rebuilding, as the rows it did not have yet were
+ * checked one by one.
+ *
+ * Like PagedLog it is read on the FX thread, dispose stops following the log.
+ */
+public class LogSearch extends ObservableListBase<LogEntry> {
+
+	private final PagedLog source;
+	private final LogIndex index;
+	private final LogQuery query;
+
+	// the rows of the time range
+	private int low;
+	private int high;
+	private int sourceSize;
+
+	// the rows matching, unless the query is only a time range
+	private int[] rows = new int[16];
+	private int size;
+
+	private final ListChangeListener<LogEntry> listener = this::sourceChanged;
+	private final Runnable rebuildListener = () -> Platform.runLater(this::indexRebuilt);
+	private boolean disposed;
+
+	public LogSearch(PagedLog source, LogIndex index, LogQuery query) {
+		this.source = source;
+		this.index = index;
+		this.query = query;
+		search();
+		source.addListener(listener);
+		index.addRebuildListener(rebuildListener);
+	}
+
+	public void dispose() {
+		disposed = true;
+		source.removeListener(listener);
+		index.removeRebuildListener(rebuildListener);
+	}
+
+	private void indexRebuilt() {
+		if (disposed || !query.isFiltered())
+			return;
+		int oldSize = size;
+		beginChange();
+		searchAgain(oldSize);
+		endChange();
+	}
+
+	private void sourceChanged(ListChangeListener.Change<? extends LogEntry> change) {
+		boolean appended = true;
+		while (change.next()) {
+			if (change.wasRemoved() || change.wasPermutated() || change.getFrom() < sourceSize)
+				appended = false;
+		}
+
+		int oldSize = size;
+		beginChange();
+		if (appended) {
+			// the range may only start in the new rows if it started after the old ones
+			if (low == sourceSize)
+				low = rowOf(query.getFrom(), false);
+			int oldHigh = Math.max(high, low);
+			high = rowOf(query.getTo(), true);
+			sourceSize = source.size();
+
+			if (query.isFiltered())
+				check(oldHigh, high);
+			else
+				size = Math.max(0, high - low);
+			if (size > oldSize)
+				nextAdd(oldSize, size);
+		} else {
+			searchAgain(oldSize);
+		}
+		endChange();
+	}
+
+	private void searchAgain(int oldSize) {
+		search();
+		if (oldSize > 0)
+			nextRemove(0, Collections.nCopies(oldSize, (LogEntry) null));
+		if (size > 0)
+			nextAdd(0, size);
+	}
+
+	private void search() {
+		sourceSize = source.size();
+		low = rowOf(query.getFrom(), false);
+		high = Math.max(low, rowOf(query.getTo(), true));
+		size = 0;
+		if (!query.isFiltered()) {
+			size = high - low;
+			return;
+		}
+
+		LogIndex.Result result = index.search(query.getTitle(), query.getText());
+		int start = Math.max(low, result != null ? result.getStart() : high);
+		int end = Math.min(high, result != null ? result.getEnd() : high);
+		if (start >= end) {
+			check(low, high);
+			return;
+		}
+
+		check(low, start);
+		// a single trigram is only listed under entries holding it, like titles
+		boolean exact = query.getText().isEmpty() || query.getText().length() == LogIndex.GRAM;
+		int[] candidates = result.getRows();
+		int first = Arrays.binarySearch(candidates, start);
+		for (int i = first >= 0 ? first : -first - 1; i < candidates.length && candidates[i] < end; i++) {
+			if (exact || query.matches(source.get(candidates[i])))
+				add(candidates[i]);
+		}
+		check(end, high);
+	}
+
+	private int rowOf(long time, boolean after) {
+		if (time == Long.MIN_VALUE)
+			return 0;
+		if (time == Long.MAX_VALUE)
+			return source.size();
+		return source.rowOf(time, after);
+	}
+
+	private void check(int from, int to) {
+		for (int row = from; row < to; row++) {
+			if (query.matches(source.get(row)))
+				add(row);
+		}
+	}
+
+	private void add(int row) {
+		if (size == rows.length)
+			rows = Arrays.copyOf(rows, size * 2);
+		rows[size++] = row;
+	}
+
+	@Override
+	public LogEntry get(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException(String.valueOf(i));
+		return source.get(query.isFiltered() ? rows[i] : low + i);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,419 @@
+package application.log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The log kept as segment files in a directory, a new segment is started every
+ * hour or once the current one reaches MAX_SEGMENT_BYTES. An index file holds
+ * the time range, line count and size of every segment, so a time range query
+ * only opens the segments overlapping it. When a segment is started, the
+ * segments older than the retention period are deleted, then the oldest ones
+ * while all of them take more than the size limit.
+ *
+ * Only one thread appends, queries may come from any thread.
+ */
+public class LogSegments {
+
+	public static final String INDEX_FILE = "segments.index";
+
+	private static final String PREFIX = "log-";
+	private static final String EXTENSION = ".csv";
+
+	private static final long MAX_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+	private static final long DEFAULT_RETENTION = TimeUnit.DAYS.toMillis(30);
+	private static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+	private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+	// the lines are written in the platform charset
+	private static final int SEPARATOR_BYTES = System.lineSeparator().getBytes().length;
+
+	static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+			.withZone(ZoneId.systemDefault());
+	private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HH")
+			.withZone(ZoneId.systemDefault());
+
+	/**
+	 * A segment file with the time range of its entries
+	 */
+	public static class Segment {
+
+		private String name;
+		private long first = Long.MAX_VALUE;
+		private long last = Long.MIN_VALUE;
+		private int lines;
+		private long bytes;
+		// lines written out to the file, the others are still buffered
+		private volatile int flushedLines;
+
+		Segment(String name) {
+			this.name = name;
+		}
+
+		void add(long time, long length) {
+			first = Math.min(first, time);
+			last = Math.max(last, time);
+			lines++;
+			bytes += length;
+		}
+
+		boolean overlaps(long from, long to) {
+			return lines > 0 && first <= to && last >= from;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getFirst() {
+			return first;
+		}
+
+		public long getLast() {
+			return last;
+		}
+
+		public int getLines() {
+			return lines;
+		}
+
+		/**
+		 * @return the number of lines that can be read from the file
+		 */
+		public int getFlushedLines() {
+			return flushedLines;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+	}
+
+	private File directory;
+	private long retention;
+	private long maxBytes;
+	// segments deleted by prune so far
+	private volatile int pruned;
+
+	// oldest first, the last one is appended to
+	private List<Segment> segments = new ArrayList<>();
+	private Segment current;
+	private long currentHour;
+	private Writer out;
+
+	public LogSegments(File directory) {
+		this(directory, DEFAULT_RETENTION, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * @param retention
+	 *            how long segments are kept in ms
+	 * @param maxBytes
+	 *            the size all the segments may take
+	 */
+	public LogSegments(File directory, long retention, long maxBytes) {
+		this.directory = directory;
+		this.retention = retention;
+		this.maxBytes = maxBytes;
+		directory.mkdirs();
+		load();
+	}
+
+	/**
+	 * Append a line, rotating to a new segment when the hour changes or the
+	 * current segment is full. The line is buffered until flush.
+	 *
+	 * @param time
+	 *            the time of the entry in epoch ms
+	 * @param line
+	 *            the entry as written in the file, without line separator
+	 */
+	public synchronized void append(long time, String line) throws IOException {
+		long hour = Math.floorDiv(time, HOUR);
+		if (current != null && current.lines == 0)
+			currentHour = hour;
+		if (current == null || hour > currentHour || current.bytes >= MAX_SEGMENT_BYTES)
+			rotate(time, hour);
+		if (out == null)
+			out = new BufferedWriter(new FileWriter(new File(directory, current.name), true));
+
+		out.write(line);
+		out.write(System.lineSeparator());
+		current.add(time, line.getBytes().length + SEPARATOR_BYTES);
+	}
+
+	public synchronized void flush() throws IOException {
+		if (out != null)
+			out.flush();
+		if (current != null)
+			current.flushedLines = current.lines;
+	}
+
+	public synchronized void close() throws IOException {
+		closeWriter();
+		writeIndex();
+	}
+
+	private void closeWriter() throws IOException {
+		if (out != null)
+			out.close();
+		out = null;
+		if (current != null)
+			current.flushedLines = current.lines;
+	}
+
+	/**
+	 * @return the number of segments deleted to keep the retention period and
+	 *         size limit, the rows of the log move up when it changes
+	 */
+	public int getPruned() {
+		return pruned;
+	}
+
+	public File getFile(Segment segment) {
+		return new File(directory, segment.name);
+	}
+
+	/**
+	 * Map the file of the segment for reading, as long as it is now
+	 */
+	public MappedByteBuffer map(Segment segment) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(getFile(segment), "r");
+		try {
+			FileChannel channel = file.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * @return the segments holding entries between from and to, both in epoch
+	 *         ms and inclusive
+	 */
+	public synchronized List<Segment> overlapping(long from, long to) {
+		List<Segment> overlapping = new ArrayList<>();
+		for (Segment segment : segments) {
+			if (segment.overlaps(from, to))
+				overlapping.add(segment);
+		}
+		return overlapping;
+	}
+
+	/**
+	 * Write all the segments, oldest first, into one file
+	 */
+	public void copyTo(File target) throws IOException {
+		List<Segment> all = overlapping(Long.MIN_VALUE, Long.MAX_VALUE);
+		flush();
+
+		OutputStream output = Files.newOutputStream(target.toPath());
+		try {
+			for (Segment segment : all) {
+				InputStream input = Files.newInputStream(new File(directory, segment.name).toPath());
+				try {
+					byte[] buffer = new byte[64 * 1024];
+					int read;
+					while ((read = input.read(buffer)) > 0)
+						output.write(buffer, 0, read);
+				} finally {
+					input.close();
+				}
+			}
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Delete every segment
+	 */
+	public synchronized void clear() throws IOException {
+		if (out != null)
+			out.close();
+		out = null;
+		current = null;
+		for (Segment segment : segments)
+			new File(directory, segment.name).delete();
+		segments.clear();
+		writeIndex();
+	}
+
+	/**
+	 * Move the entries of a single log file into segments, the file is kept
+	 * renamed with a .migrated extension. Empty files are left alone and an
+	 * earlier .migrated file is never replaced.
+	 */
+	public void migrate(File logFile) throws IOException {
+		if (!logFile.isFile() || logFile.length() == 0)
+			return;
+
+		long time = 0;
+		BufferedReader br = new BufferedReader(new FileReader(logFile));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				int comma = line.indexOf(',');
+				if (comma < 0)
+					continue;
+				try {
+					time = LocalDateTime.parse(line.substring(0, comma), TIME_FORMAT).atZone(ZoneId.systemDefault())
+							.toInstant().toEpochMilli();
+				} catch (Exception e) {
+					// keep the time of the entry before
+				}
+				append(time, line);
+			}
+		} finally {
+			br.close();
+		}
+		close();
+
+		File migrated = new File(logFile.getPath() + ".migrated");
+		for (int i = 1; migrated.exists(); i++)
+			migrated = new File(logFile.getPath() + ".migrated-" + i);
+		Files.move(logFile.toPath(), migrated.toPath());
+	}
+
+	private void rotate(long time, long hour) throws IOException {
+		closeWriter();
+
+		String base = PREFIX + HOUR_FORMAT.format(Instant.ofEpochMilli(time));
+		String name = base + EXTENSION;
+		for (int i = 1; new File(directory, name).exists(); i++)
+			name = base + "-" + i + EXTENSION;
+
+		current = new Segment(name);
+		currentHour = hour;
+		segments.add(current);
+		prune(time);
+		writeIndex();
+	}
+
+	private void prune(long now) {
+		long total = 0;
+		for (Segment segment : segments)
+			total += segment.bytes;
+
+		while (segments.size() > 1) {
+			Segment oldest = segments.get(0);
+			if (oldest.last >= now - retention && total <= maxBytes)
+				break;
+			new File(directory, oldest.name).delete();
+			segments.remove(0);
+			pruned++;
+			total -= oldest.bytes;
+		}
+	}
+
+	/**
+	 * Read the index, segments missing from it and the last segment, which
+	 * may have grown since the index was written, are scanned
+	 */
+	private void load() {
+		Set<String> indexed = new HashSet<>();
+		File index = new File(directory, INDEX_FILE);
+		if (index.isFile()) {
+			try {
+				BufferedReader br = new BufferedReader(new FileReader(index));
+				String line;
+				while ((line = br.readLine()) != null) {
+					String[] strs = line.split(",");
+					if (strs.length != 5 || !new File(directory, strs[0]).isFile())
+						continue;
+					Segment segment = new Segment(strs[0]);
+					segment.first = Long.parseLong(strs[1]);
+					segment.last = Long.parseLong(strs[2]);
+					segment.lines = Integer.parseInt(strs[3]);
+					segment.bytes = Long.parseLong(strs[4]);
+					segment.flushedLines = segment.lines;
+					segments.add(segment);
+					indexed.add(segment.name);
+				}
+				br.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				String name = file.getName();
+				if (name.startsWith(PREFIX) && name.endsWith(EXTENSION) && !indexed.contains(name))
+					segments.add(scan(name));
+			}
+		}
+		segments.sort(Comparator.comparingLong((Segment segment) -> segment.lines == 0 ? Long.MAX_VALUE
+				: segment.first).thenComparing(segment -> segment.name));
+
+		if (!segments.isEmpty()) {
+			int last = segments.size() - 1;
+			if (indexed.contains(segments.get(last).name))
+				segments.set(last, scan(segments.get(last).name));
+			current = segments.get(last);
+			currentHour = current.lines > 0 ? Math.floorDiv(current.first, HOUR) : Long.MIN_VALUE;
+		}
+	}
+
+	private Segment scan(String name) {
+		Segment segment = new Segment(name);
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(new File(directory, name)));
+			String line;
+			while ((line = br.readLine()) != null) {
+				int comma = line.indexOf(',');
+				try {
+					long time = LocalDateTime.parse(line.substring(0, comma), TIME_FORMAT)
+							.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+					segment.add(time, 0);
+				} catch (Exception e) {
+					// counted all the same, lines are found by position
+					segment.lines++;
+				}
+			}
+			br.close();
+			segment.bytes = new File(directory, name).length();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		segment.flushedLines = segment.lines;
+		return segment;
+	}
+
+	private void writeIndex() throws IOException {
+		File index = new File(directory, INDEX_FILE);
+		File temp = new File(directory, INDEX_FILE + ".tmp");
+		PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(temp)));
+		for (Segment segment : segments)
+			writer.println(segment.name + "," + segment.first + "," + segment.last + "," + segment.lines + ","
+					+ segment.bytes);
+		writer.close();
+		Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
@@ -0,0 +1,68 @@
+package application.log;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Reads the time at the start of a log line, as written with
+ * LogSegments.TIME_FORMAT, into epoch ms. The lines of one hour share the
+ * conversion from the local time, so every reader keeps its own LogTime.
+ */
+class LogTime {
+
+	// yyyy-MM-dd HH:mm:ss
+	static final int LENGTH = 19;
+
+	private long hour = -1;
+	private long hourMillis;
+
+	/**
+	 * @param start
+	 *            the offset of the line in the buffer
+	 * @param end
+	 *            the end of the line
+	 * @param previous
+	 *            the time given back for a line without a time, the time of
+	 *            the line before keeps the lines in order
+	 */
+	long parse(ByteBuffer buffer, int start, int end, long previous) {
+		if (end - start < LENGTH)
+			return previous;
+
+		int year = digits(buffer, start, 4);
+		int month = digits(buffer, start + 5, 2);
+		int day = digits(buffer, start + 8, 2);
+		int hourOfDay = digits(buffer, start + 11, 2);
+		int minute = digits(buffer, start + 14, 2);
+		int second = digits(buffer, start + 17, 2);
+		if (year < 0 || month < 0 || day < 0 || hourOfDay < 0 || minute < 0 || second < 0)
+			return previous;
+
+		long key = ((year * 100L + month) * 100 + day) * 100 + hourOfDay;
+		if (key != hour) {
+			try {
+				hourMillis = LocalDateTime.of(year, month, day, hourOfDay, 0).atZone(ZoneId.systemDefault())
+						.toInstant().toEpochMilli();
+			} catch (Exception e) {
+				return previous;
+			}
+			hour = key;
+		}
+		return hourMillis + (minute * 60 + second) * 1000L;
+	}
+
+	/**
+	 * @return the number written with count digits at offset, or -1
+	 */
+	private static int digits(ByteBuffer buffer, int offset, int count) {
+		int value = 0;
+		for (int i = 0; i < count; i++) {
+			int digit = buffer.get(offset + i) - '0';
+			if (digit < 0 || digit > 9)
+				return -1;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+}
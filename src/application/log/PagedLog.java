@@ -0,0 +1,246 @@
+package application.log;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import application.log.LogSegments.Segment;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Read-only list of the log entries of all the segments, read on demand.
+ * Every segment is memory-mapped and gets an index of its line offsets and
+ * times the first time one of its rows is asked for; a LogEntry is only
+ * created for the rows that are read, and the last CACHE_SIZE of them are kept.
+ * The size comes from the segment index, so opening the log costs about the
+ * same whatever its size.
+ *
+ * The rows are in time order, rowOf finds the rows of a time range with a
+ * binary search on the times of the one segment holding each end of it.
+ *
+ * The list is not thread-safe, it is read and refreshed on the FX thread.
+ */
+public class PagedLog extends ObservableListBase<LogEntry> {
+
+	private static final int CACHE_SIZE = 2048;
+
+	private LogSegments segments;
+
+	private List<Part> parts = new ArrayList<>();
+	private int size;
+	// the log changed, the next refresh replaces every row
+	private boolean reset;
+
+	private final LogTime logTime = new LogTime();
+
+	private Map<Integer, LogEntry> cache = new LinkedHashMap<Integer, LogEntry>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, LogEntry> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * The rows of one segment
+	 */
+	private static class Part {
+
+		final Segment segment;
+		MappedByteBuffer buffer;
+		// start of every line found so far, plus the end of the last one
+		int[] offsets = new int[1];
+		// epoch ms of every line found so far
+		long[] times = new long[1];
+		int lines;
+
+		int rows;
+		int start;
+
+		Part(Segment segment) {
+			this.segment = segment;
+		}
+	}
+
+	public void open(LogSegments segments) {
+		this.segments = segments;
+		this.parts = new ArrayList<>();
+		this.reset = true;
+		refresh();
+	}
+
+	/**
+	 * Take the lines written since the last call into account, the new rows
+	 * at the end are reported as added and anything else as a replacement of
+	 * the whole list
+	 */
+	public void refresh() {
+		int oldSize = size;
+		List<Part> oldParts = parts;
+		List<Part> newParts = new ArrayList<>();
+		if (segments != null) {
+			for (Segment segment : segments.overlapping(Long.MIN_VALUE, Long.MAX_VALUE)) {
+				Part part = find(oldParts, segment);
+				newParts.add(part != null ? part : new Part(segment));
+			}
+		}
+
+		int start = 0;
+		boolean appended = !reset && newParts.size() >= oldParts.size();
+		for (int i = 0; i < newParts.size(); i++) {
+			Part part = newParts.get(i);
+			int oldRows = part.rows;
+			int oldStart = part.start;
+			part.rows = part.segment.getFlushedLines();
+			part.start = start;
+			start += part.rows;
+
+			if (i < oldParts.size() && (oldParts.get(i) != part || oldStart != part.start
+					|| (oldRows != part.rows && i < oldParts.size() - 1)))
+				appended = false;
+		}
+		parts = newParts;
+		size = start;
+		reset = false;
+
+		beginChange();
+		if (appended && size >= oldSize) {
+			if (size > oldSize)
+				nextAdd(oldSize, size);
+		} else {
+			cache.clear();
+			if (oldSize > 0)
+				nextRemove(0, Collections.nCopies(oldSize, (LogEntry) null));
+			if (size > 0)
+				nextAdd(0, size);
+		}
+		endChange();
+	}
+
+	private static Part find(List<Part> parts, Segment segment) {
+		for (Part part : parts) {
+			if (part.segment == segment)
+				return part;
+		}
+		return null;
+	}
+
+	/**
+	 * @param time
+	 *            in epoch ms
+	 * @param after
+	 *            whether to skip the rows logged at that time as well
+	 * @return the first row logged at or after the time, or size when there
+	 *         is none. Only the segment holding the time is read.
+	 */
+	public int rowOf(long time, boolean after) {
+		for (Part part : parts) {
+			Segment segment = part.segment;
+			if (segment.getLast() < time || (after && segment.getLast() == time))
+				continue;
+			if (segment.getFirst() > time || (!after && segment.getFirst() == time))
+				return part.start;
+
+			index(part, part.rows);
+			int low = 0;
+			int high = Math.min(part.rows, part.lines);
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (part.times[middle] < time || (after && part.times[middle] == time))
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			return part.start + low;
+		}
+		return size;
+	}
+
+	/**
+	 * Find the offsets and times of the first lines of the part, mapping the
+	 * segment again if it grew
+	 */
+	private void index(Part part, int lines) {
+		if (part.lines >= lines)
+			return;
+
+		try {
+			if (part.buffer == null || part.buffer.capacity() < segments.getFile(part.segment).length())
+				part.buffer = segments.map(part.segment);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		MappedByteBuffer buffer = part.buffer;
+		int position = part.offsets[part.lines];
+		int limit = buffer.capacity();
+		while (part.lines < lines && position < limit) {
+			int start = position;
+			while (position < limit && buffer.get(position) != '\n')
+				position++;
+			long previous = part.lines > 0 ? part.times[part.lines - 1] : part.segment.getFirst();
+			long time = logTime.parse(buffer, start, position, previous);
+			if (position < limit)
+				position++;
+
+			if (part.lines + 1 >= part.offsets.length) {
+				part.offsets = Arrays.copyOf(part.offsets, part.offsets.length * 2);
+				part.times = Arrays.copyOf(part.times, part.offsets.length);
+			}
+			part.times[part.lines] = time;
+			part.offsets[++part.lines] = position;
+		}
+	}
+
+	@Override
+	public LogEntry get(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+
+		LogEntry entry = cache.get(index);
+		if (entry != null)
+			return entry;
+
+		int low = 0;
+		int high = parts.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (parts.get(middle).start <= index)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		Part part = parts.get(low);
+		int line = index - part.start;
+		index(part, line + 1);
+
+		entry = line < part.lines ? decode(part, line) : new LogEntry("", "", "");
+		cache.put(index, entry);
+		return entry;
+	}
+
+	private static LogEntry decode(Part part, int line) {
+		int start = part.offsets[line];
+		int end = part.offsets[line + 1];
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = part.buffer.get(start + i);
+
+		// the segments are written in the platform charset
+		String text = new String(bytes).trim();
+		String[] strs = text.split(",", 3);
+		return new LogEntry(strs[0], strs.length > 1 ? strs[1] : "", strs.length > 2 ? strs[2] : "");
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
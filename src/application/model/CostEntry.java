@@ -29,7 +29,11 @@ public class CostEntry {
 	}
 
 	public void setService(String service) {
-		this.service = new SimpleStringProperty(service);
+		this.service.set(service);
+	}
+
+	public SimpleStringProperty serviceProperty() {
+		return service;
 	}
 
 	public int getInvocationNum() {
@@ -37,7 +41,11 @@ public class CostEntry {
 	}
 
 	public void setInvocationNum(int invocationNum) {
-		this.invocationNum = new SimpleIntegerProperty(invocationNum);
+		this.invocationNum.set(invocationNum);
+	}
+
+	public SimpleIntegerProperty invocationNumProperty() {
+		return invocationNum;
 	}
 
 	public double getTotalCost() {
@@ -46,6 +54,10 @@ public class CostEntry {
 
 	public void setTotalCost(double totalCost) {
 		BigDecimal bd = new BigDecimal(totalCost);
-		this.totalCost = new SimpleDoubleProperty(bd.setScale(2, BigDecimal.ROUND_HALF_UP).doubleValue());
+		this.totalCost.set(bd.setScale(2, BigDecimal.ROUND_HALF_UP).doubleValue());
+	}
+
+	public SimpleDoubleProperty totalCostProperty() {
+		return totalCost;
 	}
 }
@@ -5,6 +5,7 @@ import java.math.BigDecimal;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
+import application.result.LatencyHistogram;
 
 public class PerformanceEntry {
 
@@ -12,6 +13,10 @@ public class PerformanceEntry {
 	private SimpleIntegerProperty invocationNum;
 	private SimpleIntegerProperty failNum;
 	private SimpleDoubleProperty avgResponseTime;
+	private SimpleDoubleProperty p50ResponseTime;
+	private SimpleDoubleProperty p90ResponseTime;
+	private SimpleDoubleProperty p99ResponseTime;
+	private SimpleDoubleProperty maxResponseTime;
 
 	private double total = 0.0;
 
@@ -22,6 +27,10 @@ public class PerformanceEntry {
 		this.invocationNum = new SimpleIntegerProperty(0);
 		this.failNum = new SimpleIntegerProperty(0);
 		this.avgResponseTime = new SimpleDoubleProperty(0);
+		this.p50ResponseTime = new SimpleDoubleProperty(0);
+		this.p90ResponseTime = new SimpleDoubleProperty(0);
+		this.p99ResponseTime = new SimpleDoubleProperty(0);
+		this.maxResponseTime = new SimpleDoubleProperty(0);
 	}
 
 	public PerformanceEntry(String service, int invocationNum, int failNum, double avgResponseTime) {
@@ -29,42 +38,117 @@ public class PerformanceEntry {
 		this.invocationNum = new SimpleIntegerProperty(invocationNum);
 		this.failNum = new SimpleIntegerProperty(failNum);
 		this.avgResponseTime = new SimpleDoubleProperty(avgResponseTime);
+		this.p50ResponseTime = new SimpleDoubleProperty(0);
+		this.p90ResponseTime = new SimpleDoubleProperty(0);
+		this.p99ResponseTime = new SimpleDoubleProperty(0);
+		this.maxResponseTime = new SimpleDoubleProperty(0);
 	}
 
 	public void addResponseTime(double responseTime) {
 		total += responseTime;
 	}
 
+	public void setTotalResponseTime(double total) {
+		this.total = total;
+	}
+
 	public void setService(String service) {
-		this.service = new SimpleStringProperty(service);
+		this.service.set(service);
 	}
 
 	public String getService() {
 		return service.get();
 	}
 
+	public SimpleStringProperty serviceProperty() {
+		return service;
+	}
+
 	public void setInvocationNum(int invocationNum) {
-		this.invocationNum = new SimpleIntegerProperty(invocationNum);
+		this.invocationNum.set(invocationNum);
 	}
 
 	public int getInvocationNum() {
 		return invocationNum.get();
 	}
 
+	public SimpleIntegerProperty invocationNumProperty() {
+		return invocationNum;
+	}
+
 	public void setFailNum(int failNum) {
-		this.failNum = new SimpleIntegerProperty(failNum);
+		this.failNum.set(failNum);
 	}
 
 	public int getFailNum() {
 		return failNum.get();
 	}
 
+	public SimpleIntegerProperty failNumProperty() {
+		return failNum;
+	}
+
 	public void setAvgResponseTime() {
-		BigDecimal bd = new BigDecimal(total / (invocationNum.get() - failNum.get()));
-		this.avgResponseTime = new SimpleDoubleProperty(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
+		int successNum = invocationNum.get() - failNum.get();
+		if (successNum == 0) {
+			this.avgResponseTime.set(0);
+			return;
+		}
+		BigDecimal bd = new BigDecimal(total / successNum);
+		this.avgResponseTime.set(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
 	}
 
 	public double getAvgResponseTime() {
 		return avgResponseTime.get();
 	}
+
+	public SimpleDoubleProperty avgResponseTimeProperty() {
+		return avgResponseTime;
+	}
+
+	/**
+	 * Set the percentiles and the max from the response time distribution
+	 */
+	public void setLatency(LatencyHistogram latency) {
+		this.p50ResponseTime.set(round(latency.getPercentile(50)));
+		this.p90ResponseTime.set(round(latency.getPercentile(90)));
+		this.p99ResponseTime.set(round(latency.getPercentile(99)));
+		this.maxResponseTime.set(round(latency.getMax()));
+	}
+
+	private double round(double value) {
+		return new BigDecimal(value).setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue();
+	}
+
+	public double getP50ResponseTime() {
+		return p50ResponseTime.get();
+	}
+
+	public SimpleDoubleProperty p50ResponseTimeProperty() {
+		return p50ResponseTime;
+	}
+
+	public double getP90ResponseTime() {
+		return p90ResponseTime.get();
+	}
+
+	public SimpleDoubleProperty p90ResponseTimeProperty() {
+		return p90ResponseTime;
+	}
+
+	public double getP99ResponseTime() {
+		return p99ResponseTime.get();
+	}
+
+	public SimpleDoubleProperty p99ResponseTimeProperty() {
+		return p99ResponseTime;
+	}
+
+	public double getMaxResponseTime() {
+		return maxResponseTime.get();
+	}
+
+	public SimpleDoubleProperty maxResponseTimeProperty() {
+		return maxResponseTime;
+	}
 }
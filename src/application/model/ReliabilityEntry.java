@@ -3,6 +3,7 @@ package application.model;
 import java.math.BigDecimal;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 
 public class ReliabilityEntry {
@@ -10,8 +11,11 @@ public class ReliabilityEntry {
 	private SimpleStringProperty service;
 	private SimpleIntegerProperty invocationNum;
 	private SimpleIntegerProperty failNum;
-	private SimpleDoubleProperty failRate;
-	private SimpleDoubleProperty successRate;
+	private SimpleDoubleProperty failRate = new SimpleDoubleProperty(0);
+	private SimpleDoubleProperty successRate = new SimpleDoubleProperty(0);
+	private SimpleDoubleProperty windowFailRate = new SimpleDoubleProperty(0);
+	// null, shown blank, until results arrive live
+	private SimpleObjectProperty<Double> recentFailRate = new SimpleObjectProperty<>();
 
 	public ReliabilityEntry() { }
 
@@ -28,42 +32,99 @@ public class ReliabilityEntry {
 	}
 
 	public void setService(String service) {
-		this.service = new SimpleStringProperty(service);
+		this.service.set(service);
 	}
 
 	public String getService() {
 		return service.get();
 	}
 
+	public SimpleStringProperty serviceProperty() {
+		return service;
+	}
+
 	public void setInvocationNum(int invocationNum) {
-		this.invocationNum = new SimpleIntegerProperty(invocationNum);
+		this.invocationNum.set(invocationNum);
 	}
 
 	public int getInvocationNum() {
 		return invocationNum.get();
 	}
 
+	public SimpleIntegerProperty invocationNumProperty() {
+		return invocationNum;
+	}
+
 	public void setFailNum(int failNum) {
-		this.failNum = new SimpleIntegerProperty(failNum);
+		this.failNum.set(failNum);
 	}
 
 	public int getFailNum() {
 		return failNum.get();
 	}
 
+	public SimpleIntegerProperty failNumProperty() {
+		return failNum;
+	}
+
 	public void setRate() {
+		if (invocationNum.get() == 0)
+			return;
 		BigDecimal bd = new BigDecimal(failNum.get() / (double) invocationNum.get());
-		this.failRate = new SimpleDoubleProperty(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
+		this.failRate.set(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
 		bd = new BigDecimal(1 - this.failRate.get());
-		this.successRate = new SimpleDoubleProperty(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
+		this.successRate.set(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
 	}
 
 	public double getFailRate() {
 		return failRate.get();
 	}
 
+	public SimpleDoubleProperty failRateProperty() {
+		return failRate;
+	}
+
 	public double getSuccessRate() {
 		return successRate.get();
 	}
 
+	public SimpleDoubleProperty successRateProperty() {
+		return successRate;
+	}
+
+	/**
+	 * Set the current failure rates, over the last invocations and over the
+	 * last seconds
+	 */
+	public void setCurrentRates(double windowFailRate, double recentFailRate) {
+		setWindowFailRate(windowFailRate);
+		BigDecimal bd = new BigDecimal(recentFailRate);
+		this.recentFailRate.set(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
+	}
+
+	/**
+	 * Set the failure rate over the last invocations only, for results with
+	 * no arrival time
+	 */
+	public void setWindowFailRate(double windowFailRate) {
+		BigDecimal bd = new BigDecimal(windowFailRate);
+		this.windowFailRate.set(bd.setScale(3, BigDecimal.ROUND_HALF_UP).doubleValue());
+	}
+
+	public double getWindowFailRate() {
+		return windowFailRate.get();
+	}
+
+	public SimpleDoubleProperty windowFailRateProperty() {
+		return windowFailRate;
+	}
+
+	public Double getRecentFailRate() {
+		return recentFailRate.get();
+	}
+
+	public SimpleObjectProperty<Double> recentFailRateProperty() {
+		return recentFailRate;
+	}
+
 }
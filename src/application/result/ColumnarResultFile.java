@@ -0,0 +1,238 @@
+package application.result;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary columnar copy of a result file, stored next to the csv file.
+ *
+ * The layout is a header (magic, version, row count, service dictionary)
+ * followed by one column per field: the invocation numbers, the dictionary
+ * encoded service ids, the results as a bitset and the costs and delays as
+ * doubles. The file is read through MappedByteBuffers with bulk copies, so
+ * loading does not allocate per row. It is written to a temporary file that is
+ * moved in place once complete, and its length is checked against its header
+ * when it is read.
+ */
+public class ColumnarResultFile {
+
+	public static final String EXTENSION = ".rcf";
+
+	private static final int MAGIC = 0x52434631;
+	private static final int VERSION = 1;
+
+	// the largest part of the file mapped at once
+	private static final long WINDOW_SIZE = 1L << 30;
+	private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * @param resultFilePath
+	 *            the csv result file path
+	 * @return the path of the columnar file next to it
+	 */
+	public static String pathFor(String resultFilePath) {
+		if (resultFilePath.endsWith(".csv"))
+			return resultFilePath.substring(0, resultFilePath.length() - 4) + EXTENSION;
+		return resultFilePath + EXTENSION;
+	}
+
+	/**
+	 * @param resultFilePath
+	 *            the csv result file path
+	 * @return whether a columnar file at least as recent as the csv file exists
+	 */
+	public static boolean isFresh(String resultFilePath) {
+		File csv = new File(resultFilePath);
+		File columnar = new File(pathFor(resultFilePath));
+		return columnar.isFile() && columnar.lastModified() >= csv.lastModified();
+	}
+
+	public static void write(ResultIndex index, String columnarFilePath) throws IOException {
+		int size = index.size();
+		List<byte[]> names = new ArrayList<>();
+		for (String service : index.getServices())
+			names.add(service.getBytes(StandardCharsets.UTF_8));
+
+		// written aside and moved in place, a failed write leaves no stale copy
+		File target = new File(columnarFilePath);
+		File temp = new File(columnarFilePath + ".tmp");
+		FileChannel channel = new RandomAccessFile(temp, "rw").getChannel();
+		try {
+			channel.truncate(0);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt(size);
+			buffer.putInt(names.size());
+			for (byte[] name : names) {
+				if (buffer.remaining() < 4 + name.length)
+					drain(channel, buffer);
+				buffer.putInt(name.length);
+				buffer.put(name);
+			}
+
+			for (int row = 0; row < size; row++) {
+				if (buffer.remaining() < 4)
+					drain(channel, buffer);
+				buffer.putInt(index.getInvocation(row));
+			}
+			for (int row = 0; row < size; row++) {
+				if (buffer.remaining() < 4)
+					drain(channel, buffer);
+				buffer.putInt(index.getServiceId(row));
+			}
+
+			long word = 0;
+			for (int row = 0; row < size; row++) {
+				if (index.getResult(row))
+					word |= 1L << (row & 63);
+				if ((row & 63) == 63 || row == size - 1) {
+					if (buffer.remaining() < 8)
+						drain(channel, buffer);
+					buffer.putLong(word);
+					word = 0;
+				}
+			}
+
+			for (int row = 0; row < size; row++) {
+				if (buffer.remaining() < 8)
+					drain(channel, buffer);
+				buffer.putDouble(index.getCost(row));
+			}
+			for (int row = 0; row < size; row++) {
+				if (buffer.remaining() < 8)
+					drain(channel, buffer);
+				buffer.putDouble(index.getDelay(row));
+			}
+			drain(channel, buffer);
+			channel.force(true);
+		} catch (IOException e) {
+			channel.close();
+			temp.delete();
+			throw e;
+		}
+		channel.close();
+
+		try {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * @throws IOException
+	 *             if the file can not be read or is not a complete columnar
+	 *             file
+	 */
+	public static ResultIndex read(String columnarFilePath) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(columnarFilePath, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long length = channel.size();
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(length, WINDOW_SIZE));
+
+			if (length < 16 || header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException("Not a columnar result file: " + columnarFilePath);
+
+			int size = header.getInt();
+			int serviceCount = header.getInt();
+			List<String> services = new ArrayList<>(serviceCount);
+			try {
+				for (int i = 0; i < serviceCount; i++) {
+					byte[] name = new byte[header.getInt()];
+					header.get(name);
+					services.add(new String(name, StandardCharsets.UTF_8));
+				}
+			} catch (RuntimeException e) {
+				throw new IOException("Corrupt columnar result file: " + columnarFilePath, e);
+			}
+
+			long position = header.position();
+			int bitsetLength = (size + 63) / 64;
+			long expected = position + size * 8L + bitsetLength * 8L + size * 16L;
+			if (size < 0 || length != expected)
+				throw new IOException("Incomplete columnar result file: " + columnarFilePath);
+
+			int[] invocations = new int[size];
+			position = readInts(channel, position, invocations);
+
+			int[] serviceIds = new int[size];
+			position = readInts(channel, position, serviceIds);
+
+			long[] bitset = new long[bitsetLength];
+			position = readLongs(channel, position, bitset);
+			boolean[] results = new boolean[size];
+			for (int row = 0; row < size; row++)
+				results[row] = (bitset[row >>> 6] & (1L << (row & 63))) != 0;
+
+			double[] costs = new double[size];
+			position = readDoubles(channel, position, costs);
+
+			double[] delays = new double[size];
+			readDoubles(channel, position, delays);
+
+			return ResultIndex.fromColumns(services, size, invocations, serviceIds, results, costs, delays);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * The columns are mapped a window at a time, a mapping can not exceed
+	 * 2GB while a column of a large run can
+	 *
+	 * @return the position after the column
+	 */
+	private static long readInts(FileChannel channel, long position, int[] column) throws IOException {
+		int step = (int) (WINDOW_SIZE / 4);
+		for (int offset = 0; offset < column.length; offset += step) {
+			int count = Math.min(step, column.length - offset);
+			channel.map(FileChannel.MapMode.READ_ONLY, position, count * 4L).asIntBuffer().get(column, offset,
+					count);
+			position += count * 4L;
+		}
+		return position;
+	}
+
+	private static long readLongs(FileChannel channel, long position, long[] column) throws IOException {
+		int step = (int) (WINDOW_SIZE / 8);
+		for (int offset = 0; offset < column.length; offset += step) {
+			int count = Math.min(step, column.length - offset);
+			channel.map(FileChannel.MapMode.READ_ONLY, position, count * 8L).asLongBuffer().get(column, offset,
+					count);
+			position += count * 8L;
+		}
+		return position;
+	}
+
+	private static long readDoubles(FileChannel channel, long position, double[] column) throws IOException {
+		int step = (int) (WINDOW_SIZE / 8);
+		for (int offset = 0; offset < column.length; offset += step) {
+			int count = Math.min(step, column.length - offset);
+			channel.map(FileChannel.MapMode.READ_ONLY, position, count * 8L).asDoubleBuffer().get(column, offset,
+					count);
+			position += count * 8L;
+		}
+		return position;
+	}
+}
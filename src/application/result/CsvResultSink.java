@@ -0,0 +1,40 @@
+package application.result;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes the results of a stream to a csv file in the result file layout
+ */
+public class CsvResultSink implements ResultSink {
+
+	private PrintWriter writer;
+
+	public CsvResultSink(String resultFilePath) throws IOException {
+		writer = new PrintWriter(new BufferedWriter(new FileWriter(resultFilePath, true)));
+	}
+
+	@Override
+	public void accept(ResultIndex batch) {
+		StringBuilder line = new StringBuilder();
+		for (int row = 0; row < batch.size(); row++) {
+			line.setLength(0);
+			line.append(batch.getInvocation(row)).append(',');
+			line.append(batch.getService(row)).append(',');
+			line.append(batch.getResult(row)).append(',');
+			if (!Double.isNaN(batch.getCost(row)))
+				line.append(batch.getCost(row));
+			line.append(",,");
+			if (batch.hasDelay(row))
+				line.append(batch.getDelay(row));
+			writer.println(line);
+		}
+		writer.flush();
+	}
+
+	public void close() {
+		writer.close();
+	}
+}
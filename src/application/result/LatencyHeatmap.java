@@ -0,0 +1,96 @@
+package application.result;
+
+import java.util.Arrays;
+
+/**
+ * Counts of the response times of a service per invocation window and latency
+ * bucket. The buckets are log-scaled, BUCKETS_PER_DOUBLING of them for every
+ * doubling of the latency above MIN_LATENCY. Windows start one invocation
+ * wide, once the run outgrows MAX_WINDOWS windows neighbouring windows are
+ * merged and the width doubles, so the counts stay the same size whatever the
+ * length of the run.
+ */
+public class LatencyHeatmap {
+
+	public static final int MAX_WINDOWS = 512;
+	public static final int BUCKETS = 64;
+	public static final int BUCKETS_PER_DOUBLING = 4;
+
+	/**
+	 * Upper bound of the first bucket, in ms
+	 */
+	public static final double MIN_LATENCY = 1;
+
+	private int windowWidth = 1;
+	private int windows;
+	private int[][] counts = new int[MAX_WINDOWS][BUCKETS];
+	private int maxCount;
+
+	/**
+	 * Count a response time, invocations are added in increasing order
+	 *
+	 * @param latency
+	 *            the response time in ms
+	 */
+	public void add(int invocation, double latency) {
+		invocation = Math.max(0, invocation);
+		while (invocation / windowWidth >= MAX_WINDOWS)
+			coarsen();
+
+		int window = invocation / windowWidth;
+		int count = ++counts[window][bucketOf(latency)];
+		maxCount = Math.max(maxCount, count);
+		windows = Math.max(windows, window + 1);
+	}
+
+	private void coarsen() {
+		maxCount = 0;
+		for (int window = 0; window < MAX_WINDOWS / 2; window++) {
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				counts[window][bucket] = counts[2 * window][bucket] + counts[2 * window + 1][bucket];
+				maxCount = Math.max(maxCount, counts[window][bucket]);
+			}
+		}
+		for (int window = MAX_WINDOWS / 2; window < MAX_WINDOWS; window++)
+			Arrays.fill(counts[window], 0);
+		windowWidth *= 2;
+		windows = (windows + 1) / 2;
+	}
+
+	public static int bucketOf(double latency) {
+		if (!(latency > MIN_LATENCY))
+			return 0;
+		double doublings = Math.log(latency / MIN_LATENCY) / Math.log(2);
+		return (int) Math.min(BUCKETS - 1, Math.floor(doublings * BUCKETS_PER_DOUBLING) + 1);
+	}
+
+	/**
+	 * @return the lowest latency of the bucket in ms, 0 for the first one
+	 */
+	public static double getBucketLowerBound(int bucket) {
+		return bucket == 0 ? 0 : MIN_LATENCY * Math.pow(2, (double) (bucket - 1) / BUCKETS_PER_DOUBLING);
+	}
+
+	/**
+	 * @return the number of invocations in a window
+	 */
+	public int getWindowWidth() {
+		return windowWidth;
+	}
+
+	/**
+	 * @return the number of windows holding counts, from the first invocation
+	 *         on
+	 */
+	public int getWindows() {
+		return windows;
+	}
+
+	public int getCount(int window, int bucket) {
+		return counts[window][bucket];
+	}
+
+	public int getMaxCount() {
+		return maxCount;
+	}
+}
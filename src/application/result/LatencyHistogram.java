@@ -0,0 +1,181 @@
+package application.result;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fixed memory histogram of response times with a bounded relative error, in
+ * the spirit of an HDR histogram. Values are recorded in microseconds into
+ * log-linear buckets: every power of two is split into SUB_BUCKETS / 2 linear
+ * buckets, so a percentile is off by less than 1% whatever the number of
+ * recorded values. Histograms of the same layout are merged by adding their
+ * counts.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+	// about four years in microseconds, larger values are clamped
+	private static final int MAX_EXPONENT = 47;
+
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+	private static final double UNITS_PER_MS = 1000.0;
+
+	private long[] counts = new long[BUCKETS];
+	private long count;
+	private double max;
+
+	/**
+	 * Record a response time
+	 *
+	 * @param responseTime
+	 *            the response time in ms, negative and NaN values are ignored
+	 */
+	public void record(double responseTime) {
+		if (!(responseTime >= 0))
+			return;
+		counts[index(Math.round(responseTime * UNITS_PER_MS))]++;
+		count++;
+		if (max < responseTime)
+			max = responseTime;
+	}
+
+	public void merge(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] += other.counts[i];
+		count += other.count;
+		if (max < other.max)
+			max = other.max;
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		max = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the largest recorded response time in ms, exact
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the response time in ms below which the given percentage of the
+	 *         recorded values fall, 0 if nothing was recorded
+	 */
+	public double getPercentile(double percentile) {
+		if (count == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+		if (rank < 1)
+			rank = 1;
+
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(max, middle(i) / UNITS_PER_MS);
+		}
+		return max;
+	}
+
+	private static int index(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT)
+			return BUCKETS - 1;
+
+		int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS + 1));
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS + mantissa - HALF_SUB_BUCKETS;
+	}
+
+	private static double middle(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+
+		int exponent = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + SUB_BUCKET_BITS;
+		long mantissa = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+		int shift = exponent - SUB_BUCKET_BITS + 1;
+		return (mantissa << shift) + ((1L << shift) - 1) / 2.0;
+	}
+
+	/**
+	 * Write the non empty buckets only
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		int used = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] != 0)
+				used++;
+		}
+
+		out.writeDouble(max);
+		out.writeInt(used);
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] != 0) {
+				out.writeShort(i);
+				out.writeLong(counts[i]);
+			}
+		}
+	}
+
+	public static LatencyHistogram readFrom(DataInput in) throws IOException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.max = in.readDouble();
+		int used = in.readInt();
+		for (int i = 0; i < used; i++) {
+			int index = in.readShort();
+			long count = in.readLong();
+			if (index < 0 || index >= BUCKETS)
+				throw new IOException("Invalid latency bucket " + index);
+			histogram.counts[index] = count;
+			histogram.count += count;
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return the non empty buckets as index:count pairs separated by spaces,
+	 *         preceded by the max
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(max);
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] != 0)
+				builder.append(' ').append(i).append(':').append(counts[i]);
+		}
+		return builder.toString();
+	}
+
+	public static LatencyHistogram valueOf(String str) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		String[] parts = str.trim().split(" ");
+		histogram.max = Double.parseDouble(parts[0]);
+		for (int i = 1; i < parts.length; i++) {
+			int separator = parts[i].indexOf(':');
+			int index = Integer.parseInt(parts[i].substring(0, separator));
+			long count = Long.parseLong(parts[i].substring(separator + 1));
+			histogram.counts[index] = count;
+			histogram.count += count;
+		}
+		return histogram;
+	}
+}
@@ -0,0 +1,272 @@
+package application.result;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parses large result files in parallel. The file is split into chunks at
+ * line boundaries, every chunk is parsed into its own ResultIndex on a
+ * ForkJoinPool and the partial indexes, with their per-service aggregates,
+ * are merged in file order at the end.
+ */
+public class ParallelResultParser {
+
+	/**
+	 * Files smaller than this are not worth splitting
+	 */
+	public static final long PARALLEL_THRESHOLD = 32L * 1024 * 1024;
+
+	private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	public static ResultIndex parse(String resultFilePath) throws IOException {
+		return parse(resultFilePath, ForkJoinPool.commonPool());
+	}
+
+	public static ResultIndex parse(String resultFilePath, ForkJoinPool pool) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(resultFilePath, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			List<Long> boundaries = findBoundaries(channel);
+
+			List<ChunkTask> tasks = new ArrayList<>();
+			for (int i = 0; i < boundaries.size() - 1; i++)
+				tasks.add(new ChunkTask(channel, boundaries.get(i), boundaries.get(i + 1)));
+
+			List<ResultIndex> parts = pool.invoke(new RecursiveTask<List<ResultIndex>>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected List<ResultIndex> compute() {
+					List<ResultIndex> parts = new ArrayList<>();
+					for (ChunkTask task : ForkJoinTask.invokeAll(tasks))
+						parts.add(task.join());
+					return parts;
+				}
+			});
+			return ResultIndex.merge(parts);
+		} catch (RuntimeException e) {
+			// a task failing on another worker is rethrown wrapped again
+			for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+				if (cause instanceof UncheckedIOException)
+					throw ((UncheckedIOException) cause).getCause();
+			}
+			throw e;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Chunk start offsets, each chunk but the first starts right after a new
+	 * line, the last element is the file length
+	 */
+	private static List<Long> findBoundaries(FileChannel channel) throws IOException {
+		long length = channel.size();
+		List<Long> boundaries = new ArrayList<>();
+		boundaries.add(0L);
+
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long position = CHUNK_SIZE;
+		while (position < length) {
+			long boundary = -1;
+			long scan = position;
+			while (boundary < 0 && scan < length) {
+				buffer.clear();
+				int read = channel.read(buffer, scan);
+				if (read <= 0)
+					break;
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') {
+						boundary = scan + i + 1;
+						break;
+					}
+				}
+				scan += read;
+			}
+			if (boundary < 0 || boundary >= length)
+				break;
+			boundaries.add(boundary);
+			position = boundary + CHUNK_SIZE;
+		}
+
+		boundaries.add(length);
+		return boundaries;
+	}
+
+	private static class ChunkTask extends RecursiveTask<ResultIndex> {
+
+		private static final long serialVersionUID = 1L;
+
+		private FileChannel channel;
+		private long start;
+		private long end;
+
+		private List<byte[]> names = new ArrayList<>();
+		private List<String> services = new ArrayList<>();
+
+		private int[] fields = new int[8];
+
+		ChunkTask(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected ResultIndex compute() {
+			ResultIndex index = new ResultIndex();
+			try {
+				byte[] bytes = new byte[(int) (end - start)];
+				ByteBuffer buffer = ByteBuffer.wrap(bytes);
+				while (buffer.hasRemaining()) {
+					if (channel.read(buffer, start + buffer.position()) < 0)
+						break;
+				}
+
+				int lineStart = 0;
+				for (int i = 0; i <= bytes.length; i++) {
+					if (i == bytes.length || bytes[i] == '\n') {
+						int lineEnd = i > lineStart && bytes[i - 1] == '\r' ? i - 1 : i;
+						parseLine(index, bytes, lineStart, lineEnd);
+						lineStart = i + 1;
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return index;
+		}
+
+		/**
+		 * Same rules as ResultIndex.addLine, without allocating a String per
+		 * field
+		 */
+		private void parseLine(ResultIndex index, byte[] bytes, int start, int end) {
+			int count = 0;
+			fields[count++] = start;
+			for (int i = start; i < end; i++) {
+				if (bytes[i] == ',') {
+					if (count == fields.length)
+						fields = Arrays.copyOf(fields, count * 2);
+					fields[count++] = i + 1;
+				}
+			}
+
+			// String.split drops the trailing empty fields
+			int columns = count;
+			while (columns > 0 && fieldEnd(columns - 1, count, end) == fields[columns - 1])
+				columns--;
+
+			if (columns < 3)
+				return;
+
+			int invocationNum = parseInt(bytes, fields[0], fieldEnd(0, count, end));
+			String service = service(bytes, fields[1], fieldEnd(1, count, end));
+			boolean result = parseBoolean(bytes, fields[2], fieldEnd(2, count, end));
+			double cost = columns >= 4 ? parseDouble(bytes, fields[3], fieldEnd(3, count, end)) : Double.NaN;
+			double delay = columns >= 6 ? parseDouble(bytes, fields[5], fieldEnd(5, count, end)) : Double.NaN;
+
+			index.add(invocationNum, service, result, cost, delay);
+		}
+
+		private int fieldEnd(int field, int count, int end) {
+			return field + 1 < count ? fields[field + 1] - 1 : end;
+		}
+
+		private String service(byte[] bytes, int start, int end) {
+			int length = end - start;
+			for (int i = 0; i < names.size(); i++) {
+				byte[] name = names.get(i);
+				if (name.length == length && regionEquals(name, bytes, start))
+					return services.get(i);
+			}
+			byte[] name = new byte[length];
+			System.arraycopy(bytes, start, name, 0, length);
+			String service = new String(name, StandardCharsets.UTF_8);
+			names.add(name);
+			services.add(service);
+			return service;
+		}
+
+		private static boolean regionEquals(byte[] name, byte[] bytes, int start) {
+			for (int i = 0; i < name.length; i++) {
+				if (name[i] != bytes[start + i])
+					return false;
+			}
+			return true;
+		}
+
+		private static boolean parseBoolean(byte[] bytes, int start, int end) {
+			return end - start == 4 && (bytes[start] | 0x20) == 't' && (bytes[start + 1] | 0x20) == 'r'
+					&& (bytes[start + 2] | 0x20) == 'u' && (bytes[start + 3] | 0x20) == 'e';
+		}
+
+		/**
+		 * Same result as Integer.parseInt, which the empty, too long and
+		 * malformed values are left to so they are rejected the same way
+		 */
+		private static int parseInt(byte[] bytes, int start, int end) {
+			boolean negative = start < end && bytes[start] == '-';
+			int first = negative ? start + 1 : start;
+			// nine digits can not overflow an int
+			if (first == end || end - first > 9)
+				return Integer.parseInt(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+
+			int value = 0;
+			for (int i = first; i < end; i++) {
+				int digit = bytes[i] - '0';
+				if (digit < 0 || digit > 9)
+					return Integer.parseInt(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+				value = value * 10 + digit;
+			}
+			return negative ? -value : value;
+		}
+
+		/**
+		 * Plain decimals with at most 15 significant digits are exact as a
+		 * long divided by a power of ten, which gives the same double as
+		 * Double.parseDouble, anything else falls back to it
+		 */
+		private static double parseDouble(byte[] bytes, int start, int end) {
+			int i = start;
+			boolean negative = false;
+			if (i < end && (bytes[i] == '-' || bytes[i] == '+'))
+				negative = bytes[i++] == '-';
+
+			long mantissa = 0;
+			int digits = 0;
+			int scale = -1;
+			for (; i < end; i++) {
+				byte b = bytes[i];
+				if (b >= '0' && b <= '9') {
+					mantissa = mantissa * 10 + (b - '0');
+					digits++;
+					if (scale >= 0)
+						scale++;
+				} else if (b == '.' && scale < 0)
+					scale = 0;
+				else
+					break;
+			}
+
+			if (i != end || digits == 0 || digits > 15 || scale > 22)
+				return Double.parseDouble(new String(bytes, start, end - start));
+
+			double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+			return negative ? -value : value;
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package application.result;
+
+import java.util.Arrays;
+
+/**
+ * p50, p95 and p99 response time of a service per window of a fixed number of
+ * invocations, computed in one pass over the response times in invocation
+ * order. The window being filled is kept in a LatencyHistogram that is reset
+ * when the next window starts, so the memory is one histogram plus three
+ * values per closed window whatever the number of response times.
+ */
+public class PercentileSeries {
+
+	public static final double[] PERCENTILES = { 50, 95, 99 };
+
+	private final int windowWidth;
+
+	private LatencyHistogram current = new LatencyHistogram();
+	private int currentWindow = -1;
+
+	private int size;
+	private int[] windows = new int[64];
+	private double[][] values = new double[PERCENTILES.length][64];
+
+	/**
+	 * @param windowWidth
+	 *            the number of invocations in a window
+	 */
+	public PercentileSeries(int windowWidth) {
+		this.windowWidth = Math.max(1, windowWidth);
+	}
+
+	/**
+	 * Record a response time, invocations are added in increasing order
+	 *
+	 * @param responseTime
+	 *            the response time in ms
+	 */
+	public void add(int invocation, double responseTime) {
+		int window = Math.max(0, invocation) / windowWidth;
+		if (window != currentWindow) {
+			close();
+			currentWindow = window;
+		}
+		current.record(responseTime);
+	}
+
+	private void close() {
+		if (current.getCount() == 0)
+			return;
+
+		if (size == windows.length) {
+			windows = Arrays.copyOf(windows, size * 2);
+			for (int p = 0; p < PERCENTILES.length; p++)
+				values[p] = Arrays.copyOf(values[p], size * 2);
+		}
+		windows[size] = currentWindow;
+		for (int p = 0; p < PERCENTILES.length; p++)
+			values[p][size] = current.getPercentile(PERCENTILES[p]);
+		size++;
+		current.reset();
+	}
+
+	/**
+	 * @return the number of windows with response times, the one being filled
+	 *         included
+	 */
+	public int size() {
+		return current.getCount() > 0 ? size + 1 : size;
+	}
+
+	public int getWindowWidth() {
+		return windowWidth;
+	}
+
+	/**
+	 * @return the invocation in the middle of the i-th window
+	 */
+	public double getInvocation(int i) {
+		int window = i < size ? windows[i] : currentWindow;
+		return (window + 0.5) * windowWidth;
+	}
+
+	/**
+	 * @param p
+	 *            the index of the percentile in PERCENTILES
+	 * @return the percentile of the i-th window in ms
+	 */
+	public double getPercentile(int i, int p) {
+		return i < size ? values[p][i] : current.getPercentile(PERCENTILES[p]);
+	}
+}
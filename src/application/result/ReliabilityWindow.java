@@ -0,0 +1,155 @@
+package application.result;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Failure rates of a service over the last invocations and over the last
+ * seconds. Both windows are ring buffers of counters, adding a result only
+ * touches the counters it enters and the ones it evicts.
+ */
+public class ReliabilityWindow {
+
+	public static final int DEFAULT_INVOCATIONS = 100;
+	public static final int DEFAULT_SECONDS = 60;
+
+	// last invocations
+	private boolean[] failures;
+	private int position;
+	private int filled;
+	private int windowFailNum;
+
+	// last seconds, one bucket per second
+	private int[] bucketInvocations;
+	private int[] bucketFails;
+	private long lastSecond = Long.MIN_VALUE;
+	private int recentInvocationNum;
+	private int recentFailNum;
+
+	public ReliabilityWindow() {
+		this(DEFAULT_INVOCATIONS, DEFAULT_SECONDS);
+	}
+
+	public ReliabilityWindow(int invocations, int seconds) {
+		failures = new boolean[invocations];
+		bucketInvocations = new int[seconds];
+		bucketFails = new int[seconds];
+	}
+
+	/**
+	 * Build the windows of every service of a saved run, off the FX thread.
+	 * The rows of a saved run have no arrival time, only the last invocations
+	 * count them.
+	 */
+	public static Map<String, ReliabilityWindow> of(ResultIndex index) {
+		Map<String, ReliabilityWindow> windows = new HashMap<>();
+		for (int row = 0; row < index.size(); row++)
+			get(windows, index.getService(row)).add(index.getResult(row));
+		return windows;
+	}
+
+	/**
+	 * Add the rows from fromRow on to the windows of their services, creating
+	 * the missing ones
+	 *
+	 * @param timeMillis
+	 *            when the rows arrived
+	 */
+	public static void add(Map<String, ReliabilityWindow> windows, ResultIndex index, int fromRow, long timeMillis) {
+		for (int row = fromRow; row < index.size(); row++)
+			get(windows, index.getService(row)).add(index.getResult(row), timeMillis);
+	}
+
+	private static ReliabilityWindow get(Map<String, ReliabilityWindow> windows, String service) {
+		ReliabilityWindow window = windows.get(service);
+		if (window == null) {
+			window = new ReliabilityWindow();
+			windows.put(service, window);
+		}
+		return window;
+	}
+
+	/**
+	 * Add a result
+	 *
+	 * @param result
+	 *            whether the invocation succeeded
+	 * @param timeMillis
+	 *            when the result arrived
+	 */
+	public void add(boolean result, long timeMillis) {
+		add(result);
+
+		long second = timeMillis / 1000;
+		advance(second);
+		int bucket = (int) (second % bucketInvocations.length);
+		bucketInvocations[bucket]++;
+		recentInvocationNum++;
+		if (!result) {
+			bucketFails[bucket]++;
+			recentFailNum++;
+		}
+	}
+
+	/**
+	 * Add a result without an arrival time, it only counts towards the last
+	 * invocations
+	 */
+	public void add(boolean result) {
+		if (filled == failures.length) {
+			if (failures[position])
+				windowFailNum--;
+		} else
+			filled++;
+		failures[position] = !result;
+		if (!result)
+			windowFailNum++;
+		position = (position + 1) % failures.length;
+	}
+
+	/**
+	 * Clear the buckets of the seconds that left the window, at most one pass
+	 * over the buckets however long the window was idle
+	 */
+	private void advance(long second) {
+		if (second <= lastSecond)
+			return;
+
+		long steps = lastSecond == Long.MIN_VALUE ? bucketInvocations.length
+				: Math.min(second - lastSecond, bucketInvocations.length);
+		for (long s = second - steps + 1; s <= second; s++) {
+			int bucket = (int) (s % bucketInvocations.length);
+			recentInvocationNum -= bucketInvocations[bucket];
+			recentFailNum -= bucketFails[bucket];
+			bucketInvocations[bucket] = 0;
+			bucketFails[bucket] = 0;
+		}
+		lastSecond = second;
+	}
+
+	/**
+	 * @return the failure rate over the last invocations, 0 if there were none
+	 */
+	public double getFailRate() {
+		return filled == 0 ? 0 : windowFailNum / (double) filled;
+	}
+
+	/**
+	 * @param timeMillis
+	 *            the current time
+	 * @return the failure rate over the last seconds, 0 if there were no
+	 *         invocations
+	 */
+	public double getRecentFailRate(long timeMillis) {
+		advance(timeMillis / 1000);
+		return recentInvocationNum == 0 ? 0 : recentFailNum / (double) recentInvocationNum;
+	}
+
+	public int getInvocations() {
+		return failures.length;
+	}
+
+	public int getSeconds() {
+		return bucketInvocations.length;
+	}
+}
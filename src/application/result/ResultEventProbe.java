@@ -0,0 +1,107 @@
+package application.result;
+
+import br.uece.travelapp.services.TravelPlannerServiceCostProbe;
+import service.adaptation.probes.interfaces.ServiceInvocationProbeInterface;
+import service.adaptation.probes.interfaces.WorkflowProbeInterface;
+import service.auxiliary.ServiceDescription;
+
+/**
+ * Publishes the service invocations and workflow executions of the composite
+ * service to a ResultEventStream, one row per invocation as in the result
+ * file. A run binds itself to the thread executing its workflow, the events of
+ * that thread are then published on the channel of the run and numbered by the
+ * run. Events of unbound threads are published on channel 0 and numbered by
+ * the cost probe.
+ */
+public class ResultEventProbe implements WorkflowProbeInterface, ServiceInvocationProbeInterface {
+
+	private ResultEventStream stream;
+	private TravelPlannerServiceCostProbe probe;
+
+	private ThreadLocal<Run> runs = new ThreadLocal<>();
+
+	// workflow invocation number of the thread
+	private ThreadLocal<int[]> invocation = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	// start of the pending service invocation of the thread, in nanoseconds
+	private ThreadLocal<long[]> invocationStart = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	// cost of the services invoked by the workflow execution of the thread
+	private ThreadLocal<double[]> workflowCost = new ThreadLocal<double[]>() {
+		@Override
+		protected double[] initialValue() {
+			return new double[1];
+		}
+	};
+
+	public ResultEventProbe(ResultEventStream stream, TravelPlannerServiceCostProbe probe) {
+		this.stream = stream;
+		this.probe = probe;
+	}
+
+	/**
+	 * Publish the events of the current thread on the channel of a run
+	 */
+	public void bind(Run run) {
+		runs.set(run);
+	}
+
+	public void unbind() {
+		runs.remove();
+	}
+
+	@Override
+	public void workflowStarted(String qosRequirement, Object[] params) {
+		Run run = runs.get();
+		invocation.get()[0] = run != null ? run.nextInvocation() : probe.workflowInvocationCount;
+		workflowCost.get()[0] = 0;
+	}
+
+	@Override
+	public void workflowEnded(Object result, String qosRequirement, Object[] params) {
+		publish(ResultIndex.ASSISTANCE_SERVICE, result != null, workflowCost.get()[0], Double.NaN);
+	}
+
+	@Override
+	public void serviceOperationInvoked(ServiceDescription description, String opName, Object[] params) {
+		invocationStart.get()[0] = System.nanoTime();
+	}
+
+	@Override
+	public void serviceOperationReturned(ServiceDescription description, Object result, String opName,
+			Object[] params) {
+		double cost = cost(description);
+		workflowCost.get()[0] += cost;
+		publish(description.getServiceName(), true, cost, delay());
+	}
+
+	@Override
+	public void serviceOperationTimeout(ServiceDescription description, String opName, Object[] params) {
+		publish(description.getServiceName(), false, cost(description), delay());
+	}
+
+	private void publish(String service, boolean result, double cost, double delay) {
+		Run run = runs.get();
+		int invocationNum = run != null ? invocation.get()[0] : probe.workflowInvocationCount;
+		stream.publish(run != null ? run.getChannel() : 0, invocationNum, service, result, cost, delay);
+	}
+
+	private double delay() {
+		return (System.nanoTime() - invocationStart.get()[0]) / 1e6;
+	}
+
+	private double cost(ServiceDescription description) {
+		Object cost = description.getCustomProperties().get("Cost");
+		return cost instanceof Number ? ((Number) cost).doubleValue() : 0;
+	}
+}
@@ -0,0 +1,216 @@
+package application.result;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory stream of invocation results. Producers publish into a bounded
+ * lock-free ring buffer of primitive slots, a single consumer drains it in
+ * batches and hands every batch to the sinks registered for its channel.
+ * Every run publishes on its own channel. Publishing does not allocate once a
+ * service name has been seen.
+ */
+public class ResultEventStream {
+
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final int capacity;
+	private final int mask;
+
+	private final AtomicLongArray sequences;
+	private final int[] channels;
+	private final int[] invocations;
+	private final int[] serviceIds;
+	private final boolean[] results;
+	private final double[] costs;
+	private final double[] delays;
+
+	private final AtomicLong tail = new AtomicLong();
+	private long head;
+
+	private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+	private final List<String> services = new CopyOnWriteArrayList<>();
+
+	private final Map<Integer, List<ResultSink>> sinks = new ConcurrentHashMap<>();
+	private ScheduledFuture<?> dispatcher;
+
+	public ResultEventStream() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity
+	 *            the ring buffer size, rounded up to a power of two
+	 */
+	public ResultEventStream(int capacity) {
+		this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.mask = this.capacity - 1;
+
+		sequences = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++)
+			sequences.set(i, i);
+		channels = new int[this.capacity];
+		invocations = new int[this.capacity];
+		serviceIds = new int[this.capacity];
+		results = new boolean[this.capacity];
+		costs = new double[this.capacity];
+		delays = new double[this.capacity];
+	}
+
+	/**
+	 * Publish a result, waits for the consumer when the buffer is full
+	 *
+	 * @param channel
+	 *            the channel of the run
+	 * @param invocationNum
+	 *            the workflow invocation number
+	 * @param service
+	 *            the service name
+	 * @param result
+	 *            whether the invocation succeeded
+	 * @param cost
+	 *            the cost, NaN if absent
+	 * @param delay
+	 *            the response time, NaN if absent
+	 */
+	public void publish(int channel, int invocationNum, String service, boolean result, double cost, double delay) {
+		int serviceId = serviceId(service);
+
+		long position;
+		while (true) {
+			position = tail.get();
+			long difference = sequences.get((int) position & mask) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1))
+					break;
+			} else if (difference < 0)
+				Thread.yield();
+		}
+
+		int slot = (int) position & mask;
+		channels[slot] = channel;
+		invocations[slot] = invocationNum;
+		serviceIds[slot] = serviceId;
+		results[slot] = result;
+		costs[slot] = cost;
+		delays[slot] = delay;
+		sequences.lazySet(slot, position + 1);
+	}
+
+	private int serviceId(String service) {
+		Integer id = ids.get(service);
+		if (id == null) {
+			synchronized (ids) {
+				id = ids.get(service);
+				if (id == null) {
+					id = services.size();
+					services.add(service);
+					ids.put(service, id);
+				}
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Move the published results into one batch per channel, only one thread
+	 * may drain at a time
+	 *
+	 * @param batches
+	 *            the batches by channel, created as needed
+	 * @return the number of results drained
+	 */
+	public synchronized int drain(Map<Integer, ResultIndex> batches) {
+		int count = 0;
+		while (true) {
+			int slot = (int) head & mask;
+			if (sequences.get(slot) != head + 1)
+				break;
+
+			ResultIndex batch = batches.get(channels[slot]);
+			if (batch == null) {
+				batch = new ResultIndex();
+				batches.put(channels[slot], batch);
+			}
+			batch.add(invocations[slot], services.get(serviceIds[slot]), results[slot], costs[slot], delays[slot]);
+			sequences.lazySet(slot, head + capacity);
+			head++;
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Drain the stream and hand the batches to the sinks of their channel,
+	 * results of channels without sinks are dropped
+	 */
+	public synchronized void dispatch() {
+		Map<Integer, ResultIndex> batches = new HashMap<>();
+		if (drain(batches) == 0)
+			return;
+
+		for (Map.Entry<Integer, ResultIndex> entry : batches.entrySet()) {
+			List<ResultSink> channelSinks = sinks.get(entry.getKey());
+			if (channelSinks == null)
+				continue;
+			for (ResultSink sink : channelSinks) {
+				try {
+					sink.accept(entry.getValue());
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	public void addSink(int channel, ResultSink sink) {
+		List<ResultSink> channelSinks = sinks.get(channel);
+		if (channelSinks == null) {
+			sinks.putIfAbsent(channel, new CopyOnWriteArrayList<ResultSink>());
+			channelSinks = sinks.get(channel);
+		}
+		channelSinks.add(sink);
+	}
+
+	public void removeSink(int channel, ResultSink sink) {
+		List<ResultSink> channelSinks = sinks.get(channel);
+		if (channelSinks != null)
+			channelSinks.remove(sink);
+	}
+
+	/**
+	 * Remove all the sinks of a channel
+	 *
+	 * @return the removed sinks
+	 */
+	public List<ResultSink> close(int channel) {
+		List<ResultSink> channelSinks = sinks.remove(channel);
+		return channelSinks != null ? channelSinks : new ArrayList<ResultSink>();
+	}
+
+	public synchronized void start(ScheduledExecutorService executor, long period, TimeUnit unit) {
+		stop();
+		dispatcher = executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				dispatch();
+			}
+		}, period, period, unit);
+	}
+
+	public synchronized void stop() {
+		if (dispatcher != null) {
+			dispatcher.cancel(false);
+			dispatcher = null;
+		}
+	}
+}
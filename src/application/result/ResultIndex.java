@@ -0,0 +1,272 @@
+package application.result;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result file parsed in a single pass. Rows are kept in primitive columns in
+ * file order and the per-service aggregates are maintained in a RunSummary
+ * while reading, so the charts and the tables can all be filled from one scan.
+ */
+public class ResultIndex {
+
+	public static final String ASSISTANCE_SERVICE = "AssistanceService";
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private List<String> services = new ArrayList<>();
+	private Map<String, Integer> serviceIds = new HashMap<>();
+	private RunSummary summary = new RunSummary();
+
+	private int size;
+	private int[] invocations = new int[INITIAL_CAPACITY];
+	private int[] serviceColumn = new int[INITIAL_CAPACITY];
+	private boolean[] results = new boolean[INITIAL_CAPACITY];
+	private double[] costs = new double[INITIAL_CAPACITY];
+	private double[] delays = new double[INITIAL_CAPACITY];
+
+	/**
+	 * Parse a result file, large files are parsed in parallel
+	 *
+	 * @param resultFilePath
+	 *            the result file path
+	 * @return the index
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static ResultIndex load(String resultFilePath) throws IOException {
+		if (new File(resultFilePath).length() >= ParallelResultParser.PARALLEL_THRESHOLD)
+			return ParallelResultParser.parse(resultFilePath);
+
+		ResultIndex index = new ResultIndex();
+		BufferedReader br = new BufferedReader(new FileReader(resultFilePath));
+		try {
+			String line;
+			while ((line = br.readLine()) != null)
+				index.addLine(line);
+		} finally {
+			br.close();
+		}
+		return index;
+	}
+
+	/**
+	 * Load a result file, through its columnar copy when it is up to date. The
+	 * columnar copy and the run summary are written when they are missing or
+	 * stale. Run archives are read directly.
+	 *
+	 * @param resultFilePath
+	 *            the csv result file or run archive path
+	 * @return the index
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	public static ResultIndex open(String resultFilePath) throws IOException {
+		if (RunArchive.isArchive(resultFilePath))
+			return RunArchive.read(resultFilePath);
+
+		String columnarFilePath = ColumnarResultFile.pathFor(resultFilePath);
+		if (ColumnarResultFile.isFresh(resultFilePath)) {
+			try {
+				return ColumnarResultFile.read(columnarFilePath);
+			} catch (IOException e) {
+				// written by an older version or damaged, parsed and written again
+				e.printStackTrace();
+			}
+		}
+
+		ResultIndex index = load(resultFilePath);
+		try {
+			ColumnarResultFile.write(index, columnarFilePath);
+			index.getSummary().write(RunSummary.pathFor(resultFilePath));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		return index;
+	}
+
+	static ResultIndex fromColumns(List<String> services, int size, int[] invocations, int[] serviceIds,
+			boolean[] results, double[] costs, double[] delays) {
+		ResultIndex index = new ResultIndex();
+		for (String service : services)
+			index.serviceId(service);
+
+		index.size = size;
+		index.invocations = invocations;
+		index.serviceColumn = serviceIds;
+		index.results = results;
+		index.costs = costs;
+		index.delays = delays;
+
+		for (int row = 0; row < size; row++)
+			index.summary.add(invocations[row], services.get(serviceIds[row]), results[row], costs[row], delays[row]);
+		return index;
+	}
+
+	/**
+	 * Concatenate partial indexes in order, their per-service aggregates are
+	 * merged rather than recomputed
+	 *
+	 * @param parts
+	 *            the partial indexes
+	 * @return the merged index
+	 */
+	public static ResultIndex merge(List<ResultIndex> parts) {
+		int total = 0;
+		for (ResultIndex part : parts)
+			total += part.size;
+
+		ResultIndex index = new ResultIndex();
+		index.invocations = new int[total];
+		index.serviceColumn = new int[total];
+		index.results = new boolean[total];
+		index.costs = new double[total];
+		index.delays = new double[total];
+
+		for (ResultIndex part : parts) {
+			int[] ids = new int[part.services.size()];
+			for (int i = 0; i < ids.length; i++)
+				ids[i] = index.serviceId(part.services.get(i));
+			index.summary.merge(part.summary);
+
+			System.arraycopy(part.invocations, 0, index.invocations, index.size, part.size);
+			System.arraycopy(part.results, 0, index.results, index.size, part.size);
+			System.arraycopy(part.costs, 0, index.costs, index.size, part.size);
+			System.arraycopy(part.delays, 0, index.delays, index.size, part.size);
+			for (int row = 0; row < part.size; row++)
+				index.serviceColumn[index.size + row] = ids[part.serviceColumn[row]];
+
+			index.size += part.size;
+		}
+		return index;
+	}
+
+	/**
+	 * Add a line of the result file, lines with less than three columns are
+	 * ignored
+	 *
+	 * @param line
+	 *            the line
+	 */
+	public void addLine(String line) {
+		String[] str = line.split(",");
+		if (str.length >= 3) {
+			double cost = str.length >= 4 ? Double.parseDouble(str[3]) : Double.NaN;
+			double delay = str.length >= 6 ? Double.parseDouble(str[5]) : Double.NaN;
+			add(Integer.parseInt(str[0]), str[1], Boolean.parseBoolean(str[2]), cost, delay);
+		}
+	}
+
+	/**
+	 * Add a row
+	 *
+	 * @param invocationNum
+	 *            the workflow invocation number
+	 * @param service
+	 *            the service name
+	 * @param result
+	 *            whether the invocation succeeded
+	 * @param cost
+	 *            the cost, NaN if absent
+	 * @param delay
+	 *            the response time, NaN if absent
+	 */
+	public void add(int invocationNum, String service, boolean result, double cost, double delay) {
+		if (size == invocations.length)
+			grow();
+
+		invocations[size] = invocationNum;
+		serviceColumn[size] = serviceId(service);
+		results[size] = result;
+		costs[size] = cost;
+		delays[size] = delay;
+		size++;
+
+		summary.add(invocationNum, service, result, cost, delay);
+	}
+
+	/**
+	 * Append all the rows of another index
+	 *
+	 * @param other
+	 *            the index to append
+	 */
+	public void append(ResultIndex other) {
+		for (int row = 0; row < other.size; row++)
+			add(other.invocations[row], other.getService(row), other.results[row], other.costs[row], other.delays[row]);
+	}
+
+	private int serviceId(String service) {
+		Integer id = serviceIds.get(service);
+		if (id == null) {
+			id = services.size();
+			services.add(service);
+			serviceIds.put(service, id);
+		}
+		return id;
+	}
+
+	private void grow() {
+		int capacity = Math.max(INITIAL_CAPACITY, invocations.length * 2);
+		invocations = Arrays.copyOf(invocations, capacity);
+		serviceColumn = Arrays.copyOf(serviceColumn, capacity);
+		results = Arrays.copyOf(results, capacity);
+		costs = Arrays.copyOf(costs, capacity);
+		delays = Arrays.copyOf(delays, capacity);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getMaxInvocation() {
+		return summary.getMaxInvocation();
+	}
+
+	public RunSummary getSummary() {
+		return summary;
+	}
+
+	/**
+	 * @return the service names in the order they first appear
+	 */
+	public List<String> getServices() {
+		return services;
+	}
+
+	public int getInvocation(int row) {
+		return invocations[row];
+	}
+
+	public int getServiceId(int row) {
+		return serviceColumn[row];
+	}
+
+	public String getService(int row) {
+		return services.get(serviceColumn[row]);
+	}
+
+	public boolean getResult(int row) {
+		return results[row];
+	}
+
+	public double getCost(int row) {
+		return costs[row];
+	}
+
+	public double getDelay(int row) {
+		return delays[row];
+	}
+
+	public boolean hasDelay(int row) {
+		return !Double.isNaN(delays[row]);
+	}
+
+}
@@ -0,0 +1,15 @@
+package application.result;
+
+/**
+ * Notified when rows are appended to a ResultIndex
+ */
+public interface ResultListener {
+
+	/**
+	 * @param index
+	 *            the index the rows were appended to
+	 * @param fromRow
+	 *            the first appended row
+	 */
+	void resultsAppended(ResultIndex index, int fromRow);
+}
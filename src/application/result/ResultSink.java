@@ -0,0 +1,10 @@
+package application.result;
+
+/**
+ * Receives the batches drained from a ResultEventStream, on the thread that
+ * drains the stream
+ */
+public interface ResultSink {
+
+	void accept(ResultIndex batch);
+}
@@ -0,0 +1,125 @@
+package application.result;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A profile run with its own directory, holding the result file, a log of
+ * when the run started and finished and the metadata of the run
+ */
+public class Run {
+
+	public static final String RESULT_FILE = "result.csv";
+	public static final String LOG_FILE = "log.csv";
+	public static final String METADATA_FILE = "run.properties";
+
+	private String id;
+	private int channel;
+	private File directory;
+	private Properties metadata;
+
+	private AtomicInteger invocationCount = new AtomicInteger();
+	private volatile boolean finished;
+
+	Run(String id, int channel, File directory, Properties metadata) {
+		this.id = id;
+		this.channel = channel;
+		this.directory = directory;
+		this.metadata = metadata;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return the channel the results of this run are published on in the
+	 *         result stream
+	 */
+	public int getChannel() {
+		return channel;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	public String getResultFilePath() {
+		return new File(directory, RESULT_FILE).getPath();
+	}
+
+	public String getLogFilePath() {
+		return new File(directory, LOG_FILE).getPath();
+	}
+
+	public String getMetadata(String key) {
+		return metadata.getProperty(key);
+	}
+
+	public synchronized void setMetadata(String key, String value) {
+		metadata.setProperty(key, value);
+	}
+
+	/**
+	 * @return the number of the workflow invocation that just started
+	 */
+	public int nextInvocation() {
+		return invocationCount.incrementAndGet();
+	}
+
+	public int getInvocationCount() {
+		return invocationCount.get();
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public void finish() {
+		finished = true;
+		setMetadata("finished", now());
+		setMetadata("invocations", String.valueOf(getInvocationCount()));
+		try {
+			saveMetadata();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		log("RunFinished", "Run " + id + " finished after " + getInvocationCount() + " invocations");
+	}
+
+	/**
+	 * Append an entry to the log of this run, the application log is kept
+	 * apart
+	 */
+	public synchronized void log(String title, String message) {
+		try {
+			PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(getLogFilePath(), true)));
+			out.println(now() + "," + title + "," + message);
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	synchronized void saveMetadata() throws IOException {
+		OutputStream out = new FileOutputStream(new File(directory, METADATA_FILE));
+		try {
+			metadata.store(out, "Run " + id);
+		} finally {
+			out.close();
+		}
+	}
+
+	static String now() {
+		return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+	}
+}
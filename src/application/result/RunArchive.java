@@ -0,0 +1,374 @@
+package application.result;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed archive of a saved run.
+ *
+ * The rows are stored in blocks of at most BLOCK_ROWS rows. Inside a block the
+ * invocation numbers are delta encoded, the service ids are varints into the
+ * dictionary of the archive, the results are a bitset and the costs and delays
+ * are xor-ed with the previous value of the same service, then the block is
+ * deflated. The footer holds the service dictionary, the block index with the
+ * offset and invocation range of every block and the run summary, so the
+ * summary of a run is read without inflating any block.
+ */
+public class RunArchive {
+
+	public static final String EXTENSION = ".run";
+
+	public static final int BLOCK_ROWS = 64 * 1024;
+
+	private static final int MAGIC = 0x52554E31;
+	private static final int VERSION = 2;
+
+	// footer offset and magic
+	private static final int TRAILER_SIZE = 12;
+
+	public static boolean isArchive(String path) {
+		return path.endsWith(EXTENSION);
+	}
+
+	public static void write(ResultIndex index, String archivePath) throws IOException {
+		List<Block> blocks = new ArrayList<>();
+		Deflater deflater = new Deflater();
+
+		RandomAccessFile file = new RandomAccessFile(archivePath, "rw");
+		try {
+			file.setLength(0);
+			file.writeInt(MAGIC);
+			file.writeInt(VERSION);
+
+			byte[] buffer = new byte[64 * 1024];
+			for (int first = 0; first < index.size(); first += BLOCK_ROWS) {
+				Block block = encode(index, first, Math.min(first + BLOCK_ROWS, index.size()));
+				byte[] raw = block.data;
+
+				deflater.reset();
+				deflater.setInput(raw);
+				deflater.finish();
+				block.offset = file.getFilePointer();
+				block.rawLength = raw.length;
+				while (!deflater.finished()) {
+					int length = deflater.deflate(buffer);
+					file.write(buffer, 0, length);
+				}
+				block.length = (int) (file.getFilePointer() - block.offset);
+				block.data = null;
+				blocks.add(block);
+			}
+
+			long footerOffset = file.getFilePointer();
+			ByteArrayOutputStream footer = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(footer);
+
+			out.writeInt(index.getServices().size());
+			for (String service : index.getServices())
+				out.writeUTF(service);
+
+			out.writeInt(blocks.size());
+			for (Block block : blocks) {
+				out.writeInt(block.rows);
+				out.writeInt(block.minInvocation);
+				out.writeInt(block.maxInvocation);
+				out.writeLong(block.offset);
+				out.writeInt(block.length);
+				out.writeInt(block.rawLength);
+			}
+
+			index.getSummary().writeTo(out);
+			out.flush();
+
+			file.write(footer.toByteArray());
+			file.writeLong(footerOffset);
+			file.writeInt(MAGIC);
+		} finally {
+			deflater.end();
+			file.close();
+		}
+	}
+
+	/**
+	 * Read the summary from the footer without inflating any block
+	 */
+	public static RunSummary readSummary(String archivePath) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(archivePath, "r");
+		try {
+			return readFooter(file, archivePath).summary;
+		} finally {
+			file.close();
+		}
+	}
+
+	public static ResultIndex read(String archivePath) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(archivePath, "r");
+		Inflater inflater = new Inflater();
+		try {
+			Footer footer = readFooter(file, archivePath);
+
+			int capacity = 0;
+			for (Block block : footer.blocks)
+				capacity += block.rows;
+
+			Columns columns = new Columns(capacity);
+			for (Block block : footer.blocks) {
+				byte[] compressed = new byte[block.length];
+				file.seek(block.offset);
+				file.readFully(compressed);
+
+				byte[] raw = new byte[block.rawLength];
+				inflater.reset();
+				inflater.setInput(compressed);
+				try {
+					if (inflater.inflate(raw) != raw.length)
+						throw new IOException("Truncated block in " + archivePath);
+				} catch (DataFormatException e) {
+					throw new IOException("Corrupt block in " + archivePath, e);
+				}
+
+				decode(raw, block.rows, footer.services.size(), columns);
+			}
+
+			return ResultIndex.fromColumns(footer.services, columns.size, columns.invocations, columns.serviceIds,
+					columns.results, columns.costs, columns.delays);
+		} finally {
+			inflater.end();
+			file.close();
+		}
+	}
+
+	private static Footer readFooter(RandomAccessFile file, String archivePath) throws IOException {
+		file.seek(0);
+		if (file.length() < 8 + TRAILER_SIZE || file.readInt() != MAGIC || file.readInt() != VERSION)
+			throw new IOException("Not a run archive: " + archivePath);
+
+		file.seek(file.length() - TRAILER_SIZE);
+		long footerOffset = file.readLong();
+		if (file.readInt() != MAGIC)
+			throw new IOException("Incomplete run archive: " + archivePath);
+
+		byte[] bytes = new byte[(int) (file.length() - TRAILER_SIZE - footerOffset)];
+		file.seek(footerOffset);
+		file.readFully(bytes);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+		Footer footer = new Footer();
+		int serviceCount = in.readInt();
+		for (int i = 0; i < serviceCount; i++)
+			footer.services.add(in.readUTF());
+
+		int blockCount = in.readInt();
+		for (int i = 0; i < blockCount; i++) {
+			Block block = new Block();
+			block.rows = in.readInt();
+			block.minInvocation = in.readInt();
+			block.maxInvocation = in.readInt();
+			block.offset = in.readLong();
+			block.length = in.readInt();
+			block.rawLength = in.readInt();
+			footer.blocks.add(block);
+		}
+
+		footer.summary = RunSummary.readFrom(in);
+		return footer;
+	}
+
+	private static Block encode(ResultIndex index, int first, int last) {
+		Block block = new Block();
+		block.rows = last - first;
+		block.minInvocation = Integer.MAX_VALUE;
+		block.maxInvocation = Integer.MIN_VALUE;
+
+		VarintBuffer out = new VarintBuffer(block.rows * 8);
+
+		int previous = 0;
+		for (int row = first; row < last; row++) {
+			int invocation = index.getInvocation(row);
+			block.minInvocation = Math.min(block.minInvocation, invocation);
+			block.maxInvocation = Math.max(block.maxInvocation, invocation);
+			out.putVarlong(zigzag((long) invocation - previous));
+			previous = invocation;
+		}
+
+		for (int row = first; row < last; row++)
+			out.putVarlong(index.getServiceId(row));
+
+		int bits = 0;
+		for (int row = first; row < last; row++) {
+			if (index.getResult(row))
+				bits |= 1 << ((row - first) & 7);
+			if (((row - first) & 7) == 7 || row == last - 1) {
+				out.put((byte) bits);
+				bits = 0;
+			}
+		}
+
+		long[] previousCosts = new long[index.getServices().size()];
+		long[] previousDelays = new long[index.getServices().size()];
+		for (int row = first; row < last; row++) {
+			int id = index.getServiceId(row);
+			long value = Double.doubleToRawLongBits(index.getCost(row));
+			out.putVarlong(value ^ previousCosts[id]);
+			previousCosts[id] = value;
+		}
+		for (int row = first; row < last; row++) {
+			int id = index.getServiceId(row);
+			long value = Double.doubleToRawLongBits(index.getDelay(row));
+			out.putVarlong(value ^ previousDelays[id]);
+			previousDelays[id] = value;
+		}
+
+		block.data = out.toByteArray();
+		return block;
+	}
+
+	private static void decode(byte[] raw, int rows, int serviceCount, Columns columns) {
+		VarintBuffer in = new VarintBuffer(raw);
+
+		int[] invocations = new int[rows];
+		int previous = 0;
+		for (int i = 0; i < rows; i++) {
+			previous = (int) (previous + unzigzag(in.getVarlong()));
+			invocations[i] = previous;
+		}
+
+		int[] serviceIds = new int[rows];
+		for (int i = 0; i < rows; i++)
+			serviceIds[i] = (int) in.getVarlong();
+
+		boolean[] results = new boolean[rows];
+		for (int i = 0; i < rows; i += 8) {
+			int bits = in.get();
+			for (int bit = 0; bit < 8 && i + bit < rows; bit++)
+				results[i + bit] = (bits & (1 << bit)) != 0;
+		}
+
+		double[] costs = new double[rows];
+		long[] previousValues = new long[serviceCount];
+		for (int i = 0; i < rows; i++) {
+			long value = in.getVarlong() ^ previousValues[serviceIds[i]];
+			costs[i] = Double.longBitsToDouble(value);
+			previousValues[serviceIds[i]] = value;
+		}
+
+		double[] delays = new double[rows];
+		Arrays.fill(previousValues, 0);
+		for (int i = 0; i < rows; i++) {
+			long value = in.getVarlong() ^ previousValues[serviceIds[i]];
+			delays[i] = Double.longBitsToDouble(value);
+			previousValues[serviceIds[i]] = value;
+		}
+
+		for (int i = 0; i < rows; i++) {
+			int row = columns.size++;
+			columns.invocations[row] = invocations[i];
+			columns.serviceIds[row] = serviceIds[i];
+			columns.results[row] = results[i];
+			columns.costs[row] = costs[i];
+			columns.delays[row] = delays[i];
+		}
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static class Block {
+		int rows;
+		int minInvocation;
+		int maxInvocation;
+		long offset;
+		int length;
+		int rawLength;
+		byte[] data;
+	}
+
+	private static class Footer {
+		List<String> services = new ArrayList<>();
+		List<Block> blocks = new ArrayList<>();
+		RunSummary summary;
+	}
+
+	private static class Columns {
+		int size;
+		int[] invocations;
+		int[] serviceIds;
+		boolean[] results;
+		double[] costs;
+		double[] delays;
+
+		Columns(int capacity) {
+			invocations = new int[capacity];
+			serviceIds = new int[capacity];
+			results = new boolean[capacity];
+			costs = new double[capacity];
+			delays = new double[capacity];
+		}
+	}
+
+	/**
+	 * Growable byte buffer with LEB128 varints
+	 */
+	private static class VarintBuffer {
+
+		private byte[] bytes;
+		private int position;
+
+		VarintBuffer(int capacity) {
+			bytes = new byte[Math.max(16, capacity)];
+		}
+
+		VarintBuffer(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		void put(byte b) {
+			if (position == bytes.length)
+				bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			bytes[position++] = b;
+		}
+
+		void putVarlong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			put((byte) value);
+		}
+
+		int get() {
+			return bytes[position++] & 0xFF;
+		}
+
+		long getVarlong() {
+			long value = 0;
+			int shift = 0;
+			while (true) {
+				int b = get();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+				shift += 7;
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(bytes, position);
+		}
+	}
+}
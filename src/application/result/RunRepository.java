@@ -0,0 +1,56 @@
+package application.result;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps every run in its own directory under a root directory, so runs never
+ * share a result file. The id of a run is the name of its directory.
+ */
+public class RunRepository {
+
+	private File root;
+	private AtomicInteger channels = new AtomicInteger();
+
+	public RunRepository(String root) {
+		this.root = new File(root);
+	}
+
+	/**
+	 * Create the directory and the metadata of a new run
+	 *
+	 * @param profilePath
+	 *            the input profile of the run
+	 * @param workflowPath
+	 *            the workflow of the run
+	 * @param maxSteps
+	 *            the number of invocations of the profile
+	 * @return the run
+	 * @throws IOException
+	 *             if the run directory can not be created
+	 */
+	public synchronized Run create(String profilePath, String workflowPath, int maxSteps) throws IOException {
+		int channel = channels.incrementAndGet();
+		String id = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "-" + channel;
+
+		File directory = new File(root, id);
+		if (!directory.mkdirs())
+			throw new IOException("Could not create run directory " + directory);
+
+		Properties metadata = new Properties();
+		metadata.setProperty("id", id);
+		metadata.setProperty("profile", profilePath);
+		metadata.setProperty("workflow", workflowPath);
+		metadata.setProperty("maxSteps", String.valueOf(maxSteps));
+		metadata.setProperty("started", Run.now());
+
+		Run run = new Run(id, channel, directory, metadata);
+		run.saveMetadata();
+		run.log("RunStarted", "Run " + id + " of " + new File(profilePath).getName() + " started");
+		return run;
+	}
+}
@@ -0,0 +1,157 @@
+package application.result;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-service aggregates of a run and its highest invocation number. A saved
+ * run keeps them in a small sidecar file next to the csv so the tables can be
+ * filled without reading the rows.
+ */
+public class RunSummary {
+
+	public static final String EXTENSION = ".summary";
+
+	private static final String HEADER = "#summary";
+
+	private Map<String, ServiceStatistics> statistics = new LinkedHashMap<>();
+	private int maxInvocation;
+
+	/**
+	 * @param resultFilePath
+	 *            the csv result file path
+	 * @return the path of the summary file next to it
+	 */
+	public static String pathFor(String resultFilePath) {
+		if (resultFilePath.endsWith(".csv"))
+			return resultFilePath.substring(0, resultFilePath.length() - 4) + EXTENSION;
+		return resultFilePath + EXTENSION;
+	}
+
+	/**
+	 * @param resultFilePath
+	 *            the csv result file path
+	 * @return whether a summary file at least as recent as the csv file exists
+	 */
+	public static boolean isFresh(String resultFilePath) {
+		File csv = new File(resultFilePath);
+		File summary = new File(pathFor(resultFilePath));
+		return summary.isFile() && summary.lastModified() >= csv.lastModified();
+	}
+
+	public void add(int invocationNum, String service, boolean result, double cost, double delay) {
+		if (maxInvocation < invocationNum)
+			maxInvocation = invocationNum;
+		get(service, true).add(result, cost, delay);
+	}
+
+	public void merge(RunSummary other) {
+		if (maxInvocation < other.maxInvocation)
+			maxInvocation = other.maxInvocation;
+		for (ServiceStatistics entry : other.statistics.values())
+			get(entry.getService(), true).merge(entry);
+	}
+
+	ServiceStatistics get(String service, boolean create) {
+		ServiceStatistics entry = statistics.get(service);
+		if (entry == null && create) {
+			entry = new ServiceStatistics(service);
+			statistics.put(service, entry);
+		}
+		return entry;
+	}
+
+	public ServiceStatistics getStatistics(String service) {
+		return statistics.get(service);
+	}
+
+	/**
+	 * @return the aggregates in the order the services first appear
+	 */
+	public Collection<ServiceStatistics> getStatistics() {
+		return statistics.values();
+	}
+
+	public int getMaxInvocation() {
+		return maxInvocation;
+	}
+
+	public void write(String summaryFilePath) throws IOException {
+		PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(summaryFilePath)));
+		try {
+			writer.println(HEADER + "," + maxInvocation);
+			for (ServiceStatistics entry : statistics.values()) {
+				writer.println(entry.getService() + "," + entry.getInvocationNum() + "," + entry.getFailNum() + ","
+						+ entry.getTotalCost() + "," + entry.getTotalResponseTime() + "," + entry.getLatency());
+			}
+		} finally {
+			writer.close();
+		}
+		if (writer.checkError())
+			throw new IOException("Could not write " + summaryFilePath);
+	}
+
+	/**
+	 * Write the summary in binary form, used by the footer of a run archive
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(maxInvocation);
+		out.writeInt(statistics.size());
+		for (ServiceStatistics entry : statistics.values()) {
+			out.writeUTF(entry.getService());
+			out.writeInt(entry.getInvocationNum());
+			out.writeInt(entry.getFailNum());
+			out.writeDouble(entry.getTotalCost());
+			out.writeDouble(entry.getTotalResponseTime());
+			entry.getLatency().writeTo(out);
+		}
+	}
+
+	public static RunSummary readFrom(DataInput in) throws IOException {
+		RunSummary summary = new RunSummary();
+		summary.maxInvocation = in.readInt();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			String service = in.readUTF();
+			summary.statistics.put(service, new ServiceStatistics(service, in.readInt(), in.readInt(), in.readDouble(),
+					in.readDouble(), LatencyHistogram.readFrom(in)));
+		}
+		return summary;
+	}
+
+	public static RunSummary read(String summaryFilePath) throws IOException {
+		RunSummary summary = new RunSummary();
+		BufferedReader br = new BufferedReader(new FileReader(summaryFilePath));
+		try {
+			String line = br.readLine();
+			if (line == null || !line.startsWith(HEADER + ","))
+				throw new IOException("Not a run summary: " + summaryFilePath);
+			summary.maxInvocation = Integer.parseInt(line.substring(HEADER.length() + 1));
+
+			while ((line = br.readLine()) != null) {
+				String[] str = line.split(",");
+				if (str.length >= 5) {
+					// summaries written before the latency column have no
+					// distribution
+					LatencyHistogram latency = str.length >= 6 ? LatencyHistogram.valueOf(str[5])
+							: new LatencyHistogram();
+					summary.statistics.put(str[0], new ServiceStatistics(str[0], Integer.parseInt(str[1]),
+							Integer.parseInt(str[2]), Double.parseDouble(str[3]), Double.parseDouble(str[4]), latency));
+				}
+			}
+		} finally {
+			br.close();
+		}
+		return summary;
+	}
+}
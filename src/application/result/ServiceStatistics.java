@@ -0,0 +1,87 @@
+package application.result;
+
+/**
+ * Running aggregates of a single service over a run
+ */
+public class ServiceStatistics {
+
+	private String service;
+	private int invocationNum;
+	private int failNum;
+	private double totalCost;
+	private double totalResponseTime;
+	private LatencyHistogram latency = new LatencyHistogram();
+
+	public ServiceStatistics(String service) {
+		this.service = service;
+	}
+
+	public ServiceStatistics(String service, int invocationNum, int failNum, double totalCost,
+			double totalResponseTime, LatencyHistogram latency) {
+		this.service = service;
+		this.invocationNum = invocationNum;
+		this.failNum = failNum;
+		this.totalCost = totalCost;
+		this.totalResponseTime = totalResponseTime;
+		this.latency = latency;
+	}
+
+	public void add(boolean result, double cost, double delay) {
+		invocationNum++;
+		if (result) {
+			if (!Double.isNaN(cost))
+				totalCost += cost;
+			if (!Double.isNaN(delay)) {
+				totalResponseTime += delay;
+				latency.record(delay);
+			}
+		} else
+			failNum++;
+	}
+
+	public void merge(ServiceStatistics other) {
+		invocationNum += other.invocationNum;
+		failNum += other.failNum;
+		totalCost += other.totalCost;
+		totalResponseTime += other.totalResponseTime;
+		latency.merge(other.latency);
+	}
+
+	public String getService() {
+		return service;
+	}
+
+	public int getInvocationNum() {
+		return invocationNum;
+	}
+
+	public int getFailNum() {
+		return failNum;
+	}
+
+	public int getSuccessNum() {
+		return invocationNum - failNum;
+	}
+
+	/**
+	 * @return the cost summed over the successful invocations
+	 */
+	public double getTotalCost() {
+		return totalCost;
+	}
+
+	/**
+	 * @return the response time summed over the successful invocations
+	 */
+	public double getTotalResponseTime() {
+		return totalResponseTime;
+	}
+
+	/**
+	 * @return the distribution of the response times of the successful
+	 *         invocations
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+}
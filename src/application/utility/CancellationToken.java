@@ -0,0 +1,18 @@
+package application.utility;
+
+/**
+ * Cooperative cancellation of a background job, the job checks the token
+ * from time to time and gives up once it is cancelled
+ */
+public class CancellationToken {
+
+	private volatile boolean cancelled;
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
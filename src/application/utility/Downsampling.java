@@ -0,0 +1,92 @@
+package application.utility;
+
+/**
+ * Downsampling of line series for display
+ */
+public class Downsampling {
+
+	/**
+	 * Pick the points of a series that best keep its visual shape with
+	 * Largest-Triangle-Three-Buckets: the first and last points are kept and
+	 * every bucket in between contributes the point forming the largest
+	 * triangle with the previously picked point and the average of the next
+	 * bucket.
+	 *
+	 * @param xs
+	 *            the x values, in increasing order
+	 * @param ys
+	 *            the y values
+	 * @param from
+	 *            the first point, inclusive
+	 * @param to
+	 *            the last point, exclusive
+	 * @param threshold
+	 *            the number of points to pick
+	 * @return the indexes of the picked points in increasing order, all the
+	 *         points when there are no more than threshold
+	 */
+	public static int[] lttb(double[] xs, double[] ys, int from, int to, int threshold) {
+		int length = to - from;
+		if (threshold >= length || threshold < 3) {
+			int[] all = new int[Math.max(0, length)];
+			for (int i = 0; i < all.length; i++)
+				all[i] = from + i;
+			return all;
+		}
+
+		int[] sampled = new int[threshold];
+		int count = 0;
+		double every = (double) (length - 2) / (threshold - 2);
+
+		int a = from;
+		sampled[count++] = a;
+
+		for (int i = 0; i < threshold - 2; i++) {
+			int averageStart = from + (int) Math.floor((i + 1) * every) + 1;
+			int averageEnd = Math.min(from + (int) Math.floor((i + 2) * every) + 1, to);
+			double averageX = 0;
+			double averageY = 0;
+			for (int j = averageStart; j < averageEnd; j++) {
+				averageX += xs[j];
+				averageY += ys[j];
+			}
+			averageX /= averageEnd - averageStart;
+			averageY /= averageEnd - averageStart;
+
+			int rangeStart = from + (int) Math.floor(i * every) + 1;
+			int rangeEnd = from + (int) Math.floor((i + 1) * every) + 1;
+			double maxArea = -1;
+			int next = rangeStart;
+			for (int j = rangeStart; j < rangeEnd; j++) {
+				double area = Math.abs((xs[a] - averageX) * (ys[j] - ys[a]) - (xs[a] - xs[j]) * (averageY - ys[a]));
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+
+			sampled[count++] = next;
+			a = next;
+		}
+
+		sampled[count++] = to - 1;
+		return sampled;
+	}
+
+	/**
+	 * @return the first index in [from, to) whose value is not below key, to
+	 *         if there is none
+	 */
+	public static int lowerBound(double[] values, int from, int to, double key) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] < key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,229 @@
+package application.utility;
+
+import java.util.Arrays;
+
+/**
+ * Values keyed by invocation number, aggregated (count, sum, min, max) at
+ * power-of-two resolutions. The finest level groups LEAF_WIDTH invocations,
+ * every next level groups twice as many. A query for a range drawn over a
+ * number of pixel columns reads the coarsest level whose bins are still
+ * narrower than a column, or the raw values once zoomed in closer than the
+ * finest level, so it touches about as many bins as there are columns
+ * whatever the number of values.
+ */
+public class ZoomPyramid {
+
+	private static final int LEAF_SHIFT = 4;
+
+	/**
+	 * Number of invocations in a bin of the finest level
+	 */
+	public static final int LEAF_WIDTH = 1 << LEAF_SHIFT;
+
+	private int size;
+	private int[] invocations = new int[1024];
+	private double[] values = new double[1024];
+
+	private Level[] levels = new Level[0];
+
+	/**
+	 * Add a value, invocations are added in increasing order
+	 */
+	public void add(int invocation, double value) {
+		if (size == invocations.length) {
+			invocations = Arrays.copyOf(invocations, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		invocations[size] = invocation;
+		values[size] = value;
+		size++;
+
+		// enough levels for the coarsest to hold everything in a few bins
+		while (levels.length == 0 || (invocation >> levels[levels.length - 1].shift) >= 2) {
+			Level level = new Level(LEAF_SHIFT + levels.length);
+			if (levels.length > 0)
+				level.merge(levels[levels.length - 1]);
+			levels = Arrays.copyOf(levels, levels.length + 1);
+			levels[levels.length - 1] = level;
+		}
+		for (Level level : levels)
+			level.add(invocation, value);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getInvocation(int i) {
+		return invocations[i];
+	}
+
+	public double getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * @return the first value whose invocation is not below the given one
+	 */
+	public int lowerBound(double invocation) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (invocations[middle] < invocation)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Aggregate the values of the invocations in [from, to) into columns of
+	 * equal width
+	 *
+	 * @param from
+	 *            the first invocation of the range
+	 * @param to
+	 *            the end of the range
+	 * @param columns
+	 *            the aggregates, reset first, one per column
+	 */
+	public void query(double from, double to, Columns columns) {
+		columns.reset();
+		int count = columns.size();
+		if (count == 0 || to <= from || size == 0)
+			return;
+
+		double scale = count / (to - from);
+		double columnWidth = (to - from) / count;
+
+		Level level = null;
+		for (Level candidate : levels) {
+			if ((1 << candidate.shift) <= columnWidth)
+				level = candidate;
+		}
+
+		if (level == null) {
+			for (int i = lowerBound(from); i < size && invocations[i] < to; i++)
+				columns.add(column(invocations[i], from, scale, count), 1, values[i], values[i], values[i]);
+			return;
+		}
+
+		int first = Math.max(0, (int) Math.floor(from) >> level.shift);
+		int last = Math.min(level.bins - 1, (int) Math.ceil(to - 1) >> level.shift);
+		for (int bin = first; bin <= last; bin++) {
+			if (level.counts[bin] == 0)
+				continue;
+			double start = Math.max(from, (double) ((long) bin << level.shift));
+			columns.add(column(start, from, scale, count), level.counts[bin], level.sums[bin], level.mins[bin],
+					level.maxs[bin]);
+		}
+	}
+
+	private static int column(double invocation, double from, double scale, int count) {
+		return (int) Math.max(0, Math.min(count - 1, (invocation - from) * scale));
+	}
+
+	private static class Level {
+
+		final int shift;
+		int bins;
+		int[] counts = new int[0];
+		double[] sums = new double[0];
+		double[] mins = new double[0];
+		double[] maxs = new double[0];
+
+		Level(int shift) {
+			this.shift = shift;
+		}
+
+		void add(int invocation, double value) {
+			add(Math.max(0, invocation) >> shift, 1, value, value, value);
+		}
+
+		/**
+		 * Fill from the next finer level, when the level is added
+		 */
+		void merge(Level finer) {
+			for (int bin = 0; bin < finer.bins; bin++) {
+				if (finer.counts[bin] > 0)
+					add(bin >> (shift - finer.shift), finer.counts[bin], finer.sums[bin], finer.mins[bin],
+							finer.maxs[bin]);
+			}
+		}
+
+		private void add(int bin, int count, double sum, double min, double max) {
+			if (bin >= counts.length) {
+				int capacity = Math.max(bin + 1, counts.length * 2);
+				counts = Arrays.copyOf(counts, capacity);
+				sums = Arrays.copyOf(sums, capacity);
+				mins = Arrays.copyOf(mins, capacity);
+				maxs = Arrays.copyOf(maxs, capacity);
+			}
+			bins = Math.max(bins, bin + 1);
+
+			if (counts[bin] == 0 || min < mins[bin])
+				mins[bin] = min;
+			if (counts[bin] == 0 || max > maxs[bin])
+				maxs[bin] = max;
+			counts[bin] += count;
+			sums[bin] += sum;
+		}
+	}
+
+	/**
+	 * Per column aggregates of a query
+	 */
+	public static class Columns {
+
+		private int[] counts;
+		private double[] sums;
+		private double[] mins;
+		private double[] maxs;
+
+		public Columns(int size) {
+			counts = new int[size];
+			sums = new double[size];
+			mins = new double[size];
+			maxs = new double[size];
+		}
+
+		void reset() {
+			Arrays.fill(counts, 0);
+			Arrays.fill(sums, 0);
+		}
+
+		void add(int column, int count, double sum, double min, double max) {
+			if (counts[column] == 0 || min < mins[column])
+				mins[column] = min;
+			if (counts[column] == 0 || max > maxs[column])
+				maxs[column] = max;
+			counts[column] += count;
+			sums[column] += sum;
+		}
+
+		public int size() {
+			return counts.length;
+		}
+
+		public int getCount(int column) {
+			return counts[column];
+		}
+
+		/**
+		 * @return the mean of the column, NaN if it has no values
+		 */
+		public double getMean(int column) {
+			return counts[column] == 0 ? Double.NaN : sums[column] / counts[column];
+		}
+
+		public double getMin(int column) {
+			return mins[column];
+		}
+
+		public double getMax(int column) {
+			return maxs[column];
+		}
+	}
+}
@@ -1,14 +1,12 @@
 package application.view.controller;
 
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -24,9 +22,22 @@ import javax.imageio.ImageIO;
 import application.MainGui;
 import application.Node.ArrowNode.RightArrowNode;
 import application.Node.InstanceNode;
+import application.log.Log;
 import application.model.CostEntry;
 import application.model.PerformanceEntry;
 import application.model.ReliabilityEntry;
+import application.result.CsvResultSink;
+import application.result.ReliabilityWindow;
+import application.result.ResultEventProbe;
+import application.result.ResultEventStream;
+import application.result.ResultIndex;
+import application.result.ResultListener;
+import application.result.ResultSink;
+import application.result.Run;
+import application.result.RunArchive;
+import application.result.RunRepository;
+import application.result.RunSummary;
+import application.utility.CancellationToken;
 import application.utility.FileManager;
 import br.uece.travelapp.TravelPlannerApp;
 import br.uece.travelapp.configuration.Configuration;
@@ -43,6 +54,8 @@ import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
 import javafx.scene.Scene;
 import javafx.scene.SnapshotParameters;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
@@ -75,7 +88,6 @@ public class ApplicationController implements Initializable {
 
 	private String workflowPath = "resources" + File.separator + "TravelPlannerWorkflow.txt";
 	private String resultFilePath = "results" + File.separator + "result.csv";
-	private String logFilePath = "results" + File.separator + "log.csv";
 
 	private ScheduledExecutorService scheduExec = Executors.newScheduledThreadPool(5);
 
@@ -88,6 +100,17 @@ public class ApplicationController implements Initializable {
 
 	private int maxSteps;
 
+	private ResultEventStream resultStream = new ResultEventStream();
+	private ResultEventProbe eventProbe;
+	private List<ResultListener> resultListeners = new ArrayList<>();
+	private volatile ResultIndex liveIndex;
+
+	private RunRepository runRepository = new RunRepository("results" + File.separator + "runs");
+	private Set<Run> activeRuns = new HashSet<>();
+	private Run currentRun;
+
+	private CancellationToken preparation;
+
 	private Set<String> registeredServices = new HashSet<>();
 
 	@FXML
@@ -138,6 +161,12 @@ public class ApplicationController implements Initializable {
 	@FXML
 	private AnchorPane performanceChartPane;
 
+	@FXML
+	private AnchorPane percentileChartPane;
+
+	@FXML
+	private AnchorPane latencyHeatmapPane;
+
 	@FXML
 	private ScrollPane serviceScrollPane;
 
@@ -147,6 +176,9 @@ public class ApplicationController implements Initializable {
 	@FXML
 	private MenuItem openRunMenuItem;
 
+	@FXML
+	private MenuItem compareRunsMenuItem;
+
 	@FXML
 	private Button aboutButton;
 
@@ -182,9 +214,14 @@ public class ApplicationController implements Initializable {
 	@Override
 	public void initialize(URL arg0, ResourceBundle arg1) {
 
-		chartController = new ChartController(reliabilityChartPane, costChartPane, performanceChartPane);
+		chartController = new ChartController(reliabilityChartPane, costChartPane, performanceChartPane,
+				percentileChartPane, latencyHeatmapPane);
 		tableViewController = new TableViewController(reliabilityTableView, costTableView, performanceTableView);
 
+		resultListeners.add(chartController);
+		resultListeners.add(tableViewController);
+		resultStream.start(scheduExec, 250, TimeUnit.MILLISECONDS);
+
 		try {
 			String content = new String(Files.readAllBytes(Paths.get(workflowPath)));
 			workflowTextArea.setText(content);
@@ -296,6 +333,10 @@ public class ApplicationController implements Initializable {
 
 	public void setProbe(TravelPlannerServiceCostProbe probe) {
 		this.probe = probe;
+
+		eventProbe = new ResultEventProbe(resultStream, probe);
+		compositeService.getWorkflowProbe().register(eventProbe);
+		compositeService.getServiceInvocationProbe().register(eventProbe);
 	}
 
 	public void setServiceRegistry(ServiceRegistry serviceRegistry) {
@@ -466,12 +507,21 @@ public class ApplicationController implements Initializable {
 				fileChooser.setTitle("Save Run");
 				File file = fileChooser.showSaveDialog(primaryStage);
 				if (file != null) {
-					try {
-						Files.copy(Paths.get(resultFilePath), Paths.get(file.getPath() + ".csv"),
-								StandardCopyOption.REPLACE_EXISTING);
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
+					final String runFilePath = currentRun != null ? currentRun.getResultFilePath() : resultFilePath;
+					final String archivePath = RunArchive.isArchive(file.getPath()) ? file.getPath()
+							: file.getPath() + RunArchive.EXTENSION;
+					// parsing and compressing a large run takes a while
+					scheduExec.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								RunArchive.write(ResultIndex.load(runFilePath), archivePath);
+							} catch (Exception e) {
+								e.printStackTrace();
+								Platform.runLater(() -> showError("Could not save the run to " + archivePath, e));
+							}
+						}
+					});
 				}
 			}
 		});
@@ -481,28 +531,18 @@ public class ApplicationController implements Initializable {
 			public void handle(ActionEvent event) {
 				FileChooser fileChooser = new FileChooser();
 				fileChooser.setTitle("Select profile");
-				FileChooser.ExtensionFilter extension = new FileChooser.ExtensionFilter("Add Files(*.csv)", "*.csv");
+				FileChooser.ExtensionFilter extension = new FileChooser.ExtensionFilter("Add Files(*.run, *.csv)", "*.run",
+						"*.csv");
 				fileChooser.getExtensionFilters().add(extension);
 				File file = fileChooser.showOpenDialog(primaryStage);
 				if (file != null) {
 					try {
-						BufferedReader br = new BufferedReader(new FileReader(file.getPath()));
-						String line;
-						int invocationNum = 0;
-						while ((line = br.readLine()) != null) {
-							String[] str = line.split(",");
-							if (str.length >= 3) {
-								invocationNum = Integer.parseInt(str[0]);
-							}
-						}
-						br.close();
-
-						chartController.generateReliabilityChart(file.getPath(), invocationNum);
-						chartController.generateCostChart(file.getPath(), invocationNum);
-						chartController.generatePerformanceChart(file.getPath(), invocationNum);
-						tableViewController.fillReliabilityDate(file.getPath());
-						tableViewController.fillCostData(file.getPath());
-						tableViewController.fillPerformanceData(file.getPath());
+						if (RunArchive.isArchive(file.getPath()))
+							showRun(file.getPath(), RunArchive.readSummary(file.getPath()));
+						else if (RunSummary.isFresh(file.getPath()))
+							showRun(file.getPath(), RunSummary.read(RunSummary.pathFor(file.getPath())));
+						else
+							showRun(file.getPath(), null);
 					} catch (Exception e) {
 						e.printStackTrace();
 					}
@@ -519,10 +559,10 @@ public class ApplicationController implements Initializable {
 				File file = fileChooser.showSaveDialog(primaryStage);
 				if (file != null) {
 					try {
-						Files.copy(Paths.get(logFilePath), Paths.get(file.getPath() + ".csv"),
-								StandardCopyOption.REPLACE_EXISTING);
+						Log.export(new File(file.getPath() + ".csv"));
 					} catch (IOException e) {
 						e.printStackTrace();
+						showError("Could not save the log to " + file.getPath() + ".csv", e);
 					}
 				}
 			}
@@ -653,6 +693,44 @@ public class ApplicationController implements Initializable {
 			}
 		});
 
+		compareRunsMenuItem.setOnAction(new EventHandler<ActionEvent>() {
+			@Override
+			public void handle(ActionEvent event) {
+				try {
+					FileChooser fileChooser = new FileChooser();
+					fileChooser.setTitle("Select runs");
+					FileChooser.ExtensionFilter extension = new FileChooser.ExtensionFilter("Add Files(*.run, *.csv)",
+							"*.run", "*.csv");
+					fileChooser.getExtensionFilters().add(extension);
+					List<File> files = fileChooser.showOpenMultipleDialog(primaryStage);
+					if (files == null || files.isEmpty())
+						return;
+
+					FXMLLoader loader = new FXMLLoader();
+					loader.setLocation(MainGui.class.getResource("view/compareDialog.fxml"));
+					AnchorPane comparePane = (AnchorPane) loader.load();
+
+					Stage dialogStage = new Stage();
+					dialogStage.setTitle("Compare Runs");
+
+					CompareController controller = (CompareController) loader.getController();
+					controller.setStage(dialogStage);
+
+					Scene dialogScene = new Scene(comparePane);
+					dialogScene.getStylesheets()
+							.add(MainGui.class.getResource("view/application.css").toExternalForm());
+
+					dialogStage.initOwner(primaryStage);
+					dialogStage.setScene(dialogScene);
+					dialogStage.show();
+
+					controller.compare(files);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+
 		openLogMenuItem.setOnAction(new EventHandler<ActionEvent>() {
 			@Override
 			public void handle(ActionEvent event) {
@@ -682,6 +760,132 @@ public class ApplicationController implements Initializable {
 
 	}
 
+	private void showError(String header, Exception e) {
+		Alert alert = new Alert(AlertType.ERROR);
+		alert.initOwner(primaryStage);
+		alert.setHeaderText(header);
+		alert.setContentText(e.getMessage() != null ? e.getMessage() : e.toString());
+		alert.show();
+	}
+
+	/**
+	 * Fill the tables from the summary of a saved run right away when there is
+	 * one. The rows are loaded and the chart data prepared on a background
+	 * thread, then handed to the FX thread in one go. Opening another run or
+	 * starting one cancels the preparation.
+	 */
+	private void showRun(final String path, final RunSummary summary) {
+		final CancellationToken token = newPreparation();
+		liveIndex = null;
+		chartController.clear();
+		tableViewController.clear();
+		if (summary != null)
+			tableViewController.update(summary);
+
+		scheduExec.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final ResultIndex index = ResultIndex.open(path);
+					int maxSteps = summary != null ? summary.getMaxInvocation() : index.getMaxInvocation();
+					final ChartData data = ChartData.prepare(index, maxSteps, token);
+					if (data == null)
+						return;
+					final Map<String, ReliabilityWindow> windows = ReliabilityWindow.of(index);
+
+					Platform.runLater(new Runnable() {
+						@Override
+						public void run() {
+							if (token.isCancelled())
+								return;
+							chartController.show(data);
+							tableViewController.show(index.getSummary(), windows);
+						}
+					});
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	private CancellationToken newPreparation() {
+		if (preparation != null)
+			preparation.cancel();
+		preparation = new CancellationToken();
+		return preparation;
+	}
+
+	/**
+	 * Create the directory of a new run and prepare the views for it, the
+	 * results of the run are written to its own result file and appended to the
+	 * views as they arrive through the result stream
+	 */
+	private Run startRun(String profilePath, int maxSteps) throws IOException {
+		Run run = runRepository.create(profilePath, workflowPath, maxSteps);
+		final ResultIndex target = new ResultIndex();
+
+		resultStream.addSink(run.getChannel(), new CsvResultSink(run.getResultFilePath()));
+		resultStream.addSink(run.getChannel(), new ResultSink() {
+			@Override
+			public void accept(ResultIndex batch) {
+				publishResults(target, batch);
+			}
+		});
+
+		synchronized (activeRuns) {
+			activeRuns.add(run);
+		}
+
+		currentRun = run;
+		newPreparation();
+		chartController.clear();
+		tableViewController.clear();
+		chartController.createCharts(maxSteps);
+		liveIndex = target;
+		return run;
+	}
+
+	/**
+	 * Flush the remaining results of a run and close its sinks
+	 */
+	private void finishRun(Run run) {
+		run.finish();
+		resultStream.dispatch();
+		synchronized (activeRuns) {
+			activeRuns.remove(run);
+		}
+
+		for (ResultSink sink : resultStream.close(run.getChannel())) {
+			if (sink instanceof CsvResultSink)
+				((CsvResultSink) sink).close();
+		}
+	}
+
+	private boolean hasActiveRuns() {
+		synchronized (activeRuns) {
+			return !activeRuns.isEmpty();
+		}
+	}
+
+	private void publishResults(final ResultIndex target, final ResultIndex batch) {
+		if (target != liveIndex)
+			return;
+
+		Platform.runLater(new Runnable() {
+			@Override
+			public void run() {
+				if (target != liveIndex)
+					return;
+
+				int fromRow = target.size();
+				target.append(batch);
+				for (ResultListener listener : resultListeners)
+					listener.resultsAppended(target, fromRow);
+			}
+		});
+	}
+
 	private void fillProfiles() {
 		File folder = new File("resources" + File.separator + "files" + File.separator);
 		File[] files = folder.listFiles();
@@ -764,7 +968,22 @@ public class ApplicationController implements Initializable {
 			public void handle(ActionEvent event) {
 
 				if (runButton.getId().equals("runButton")) {
-					probe.reset();
+					ProfileExecutor.readFromXml(path);
+					maxSteps = ProfileExecutor.profile.getMaxSteps();
+					final int runSteps = maxSteps;
+
+					// the cost probe is shared, only reset it when no other
+					// run is counting on it
+					if (!hasActiveRuns())
+						probe.reset();
+
+					final Run run;
+					try {
+						run = startRun(path, runSteps);
+					} catch (IOException e) {
+						e.printStackTrace();
+						return;
+					}
 
 					Task<Void> task = new Task<Void>() {
 						@Override
@@ -789,7 +1008,13 @@ public class ApplicationController implements Initializable {
 
 								System.out.println("Before executing workflow!!");
 
-								travelPlannerApp.executeWorkflow(workflowPath, path);
+								eventProbe.bind(run);
+								try {
+									travelPlannerApp.executeWorkflow(workflowPath, path);
+								} finally {
+									eventProbe.unbind();
+									finishRun(run);
+								}
 
 								System.out.println("Finish executing workflow!!");
 
@@ -798,16 +1023,6 @@ public class ApplicationController implements Initializable {
 									public void run() {
 										circle.setFill(Color.GREEN);
 										runButton.setId("runButton");
-										chartController.clear();
-										tableViewController.clear();
-										chartController.generateReliabilityChart(resultFilePath,
-												travelPlannerApp.getCurrentSteps());
-										chartController.generateCostChart(resultFilePath, travelPlannerApp.getCurrentSteps());
-										chartController.generatePerformanceChart(resultFilePath,
-												travelPlannerApp.getCurrentSteps());
-										tableViewController.fillReliabilityDate(resultFilePath);
-										tableViewController.fillCostData(resultFilePath);
-										tableViewController.fillPerformanceData(resultFilePath);
 									}
 								});
 							}
@@ -820,28 +1035,26 @@ public class ApplicationController implements Initializable {
 					thread.start();
 
 					System.out.println("Start task!!");
-					ProfileExecutor.readFromXml(path);
-					maxSteps = ProfileExecutor.profile.getMaxSteps();
 					Task<Void> progressTask = new Task<Void>() {
 						@Override
 						protected Void call() throws Exception {
-							while (probe.workflowInvocationCount < maxSteps) {
+							while (run.getInvocationCount() < runSteps && !run.isFinished()) {
 								Platform.runLater(new Runnable() {
 									@Override
 									public void run() {
-										invocationLabel.setText(" " + probe.workflowInvocationCount + " / " + maxSteps);
+										invocationLabel.setText(" " + run.getInvocationCount() + " / " + runSteps);
 									}
 								});
-								updateProgress(probe.workflowInvocationCount, maxSteps);
+								updateProgress(run.getInvocationCount(), runSteps);
 								Thread.sleep(1000);
 							}
 							Platform.runLater(new Runnable() {
 								@Override
 								public void run() {
-									invocationLabel.setText("" + maxSteps + " / " + maxSteps);
+									invocationLabel.setText("" + run.getInvocationCount() + " / " + runSteps);
 								}
 							});
-							updateProgress(probe.workflowInvocationCount, maxSteps);
+							updateProgress(run.getInvocationCount(), runSteps);
 							return null;
 						}
 					};
@@ -856,14 +1069,6 @@ public class ApplicationController implements Initializable {
 						public void run() {
 							circle.setFill(Color.GREEN);
 							runButton.setId("runButton");
-							chartController.clear();
-							tableViewController.clear();
-							chartController.generateReliabilityChart(resultFilePath, travelPlannerApp.getCurrentSteps());
-							chartController.generateCostChart(resultFilePath, travelPlannerApp.getCurrentSteps());
-							chartController.generatePerformanceChart(resultFilePath, travelPlannerApp.getCurrentSteps());
-							tableViewController.fillReliabilityDate(resultFilePath);
-							tableViewController.fillCostData(resultFilePath);
-							tableViewController.fillPerformanceData(resultFilePath);
 						}
 					});
 				}
@@ -1,273 +1,502 @@
 package application.view.controller;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import application.Node.LatencyHeatmapView;
+import application.Node.ReliabilityTimeline;
+import application.result.PercentileSeries;
+import application.result.ResultIndex;
+import application.result.ResultListener;
+import application.utility.Downsampling;
+import application.utility.ZoomPyramid;
 import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.ScatterChart;
-import javafx.scene.chart.StackedBarChart;
+import javafx.scene.chart.StackedAreaChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.chart.XYChart.Data;
+import javafx.scene.input.MouseButton;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+
+public class ChartController implements ResultListener {
 
-public class ChartController {
-	
 	private AnchorPane reliabilityChartPane;
 	private AnchorPane costChartPane;
 	private AnchorPane performanceChartPane;
+	private AnchorPane percentileChartPane;
+	private AnchorPane latencyHeatmapPane;
 
-	private ScatterChart<Number, String> reliabilityChart;
-	private StackedBarChart<String, Number> performanceChart;
+	private ReliabilityTimeline reliabilityChart;
+	private StackedAreaChart<Number, Number> performanceChart;
 	private LineChart<Number, Number> costChart;
+	private LineChart<Number, Number> percentileChart;
+	private ComboBox<String> percentileServiceComboBox;
+	private LatencyHeatmapView latencyHeatmap;
+	private ComboBox<String> heatmapServiceComboBox;
+
+	private int maxSteps;
+
+	private XYChart.Series<Number, Number> costSeries;
+	private Map<String, XYChart.Series<Number, Number>> delays = new LinkedHashMap<>();
+
+	private ChartData data = new ChartData(0);
 
-	public ChartController(AnchorPane reliabilityChartPane, AnchorPane costChartPane, AnchorPane performanceChartPane) {
+	// points charted when the pane has not been laid out yet
+	private static final int DEFAULT_COST_POINTS = 1000;
+
+	// narrowest range of invocations the charts can be zoomed into
+	private static final double MIN_VIEWPORT = 10;
+	// range kept per wheel notch of 40 pixels
+	private static final double ZOOM_STEP = 0.8;
+
+	// last mouse position while panning
+	private double dragX;
+
+	public ChartController(AnchorPane reliabilityChartPane, AnchorPane costChartPane, AnchorPane performanceChartPane,
+			AnchorPane percentileChartPane, AnchorPane latencyHeatmapPane) {
 		this.reliabilityChartPane = reliabilityChartPane;
 		this.costChartPane = costChartPane;
 		this.performanceChartPane = performanceChartPane;
+		this.percentileChartPane = percentileChartPane;
+		this.latencyHeatmapPane = latencyHeatmapPane;
+
+		// the charts live as long as the application, runs only replace
+		// their data and axis bounds
+		this.createReliabilityChart();
+		this.createCostChart();
+		this.createPerformanceChart();
+		this.createPercentileChart();
+		this.createLatencyHeatmap();
+
+		costChartPane.widthProperty().addListener((observable, oldValue, newValue) -> resampleCostData());
+		performanceChartPane.widthProperty().addListener((observable, oldValue, newValue) -> showPerformanceData());
+
+		this.installNavigation(getReliabilityChart());
+		this.installNavigation(getCostChart());
+		this.installNavigation(getPerformanceChart());
+		this.installNavigation(getPercentileChart());
 	}
 
-	public void generateReliabilityChart(String resultFilePath, int maxSteps) {
-		try {
-			XYChart.Series<Number, String> reliabilitySeries = new XYChart.Series<>();
-
-			NumberAxis xAxis = new NumberAxis("Invocations", 0, maxSteps, 1);
-
-			if (maxSteps >= 100)
-				xAxis.setTickUnit(maxSteps / 20);
-
-			CategoryAxis yAxis = new CategoryAxis();
-
-			setReliabilityChart(new ScatterChart<Number, String>(xAxis, yAxis));
-			reliabilityChartPane.getChildren().add(getReliabilityChart());
-			getReliabilityChart().prefWidthProperty().bind(reliabilityChartPane.widthProperty());
-			getReliabilityChart().prefHeightProperty().bind(reliabilityChartPane.heightProperty());
-
-			getReliabilityChart().setLegendVisible(false);
-
-			BufferedReader br = new BufferedReader(new FileReader(resultFilePath));
-			String line;
-			int invocationNum = 0;
-			int minVocationNum = Integer.MAX_VALUE;
-			String service;
-			boolean result;
-
-			List<String> categories = new ArrayList<>();
-			categories.add("AssistanceService");
-			while ((line = br.readLine()) != null) {
-				String[] str = line.split(",");
-				if (str.length >= 3) {
-					invocationNum = Integer.parseInt(str[0]);
-					if (minVocationNum > invocationNum)
-						minVocationNum = invocationNum;
-					service = str[1];
-					result = Boolean.parseBoolean(str[2]);
-					reliabilitySeries.getData().add(this.createReliabilityData(invocationNum, service, result, maxSteps));
-					if (!categories.contains(service) && !service.equals("AssistanceService"))
-						categories.add(service);
-				}
-			}
-			br.close();
+	/**
+	 * Empty the charts for a run of at most maxSteps invocations
+	 */
+	public void createCharts(int maxSteps) {
+		this.show(new ChartData(maxSteps));
+	}
 
-			yAxis.setAutoRanging(false);
-			yAxis.setCategories(FXCollections.<String>observableArrayList(categories));
-			yAxis.invalidateRange(categories);
+	/**
+	 * Show data prepared off the FX thread, only the visible series are built
+	 * here
+	 */
+	public void show(ChartData data) {
+		this.data = data;
+		this.maxSteps = data.getMaxSteps();
+
+		List<String> categories = new ArrayList<>();
+		categories.add(ResultIndex.ASSISTANCE_SERVICE);
+		for (String service : data.getServices()) {
+			if (!categories.contains(service))
+				categories.add(service);
+		}
+		((CategoryAxis) getReliabilityChart().getYAxis()).getCategories().setAll(categories);
+		getReliabilityChart().setData(data.invocations, data.serviceColumn, data.results, data.size, data.failures);
 
-			getReliabilityChart().getData().add(reliabilitySeries);
+		resetService(percentileServiceComboBox, data.percentiles.keySet());
+		showPercentileData();
+		resetService(heatmapServiceComboBox, data.heatmaps.keySet());
+		showLatencyHeatmap();
 
-		} catch (Exception e) {
-			e.printStackTrace();
+		// a new run starts zoomed out, this also charts the cost and response
+		// times
+		this.setViewport(0, maxSteps);
+	}
+
+	/**
+	 * Show the same range of invocations on the three charts, kept within the
+	 * run
+	 */
+	private void setViewport(double lower, double upper) {
+		double width = Math.min(maxSteps, Math.max(MIN_VIEWPORT, upper - lower));
+		lower = Math.max(0, Math.min(lower, maxSteps - width));
+		upper = lower + width;
+
+		for (XYChart<Number, ?> chart : charts()) {
+			NumberAxis xAxis = (NumberAxis) chart.getXAxis();
+			xAxis.setLowerBound(lower);
+			xAxis.setUpperBound(upper);
+			xAxis.setTickUnit(width >= 100 ? Math.floor(width / 20) : 1);
 		}
+
+		getReliabilityChart().requestLayout();
+		resampleCostData();
+		showPerformanceData();
 	}
 
-	public void generateCostChart(String resultFilePath, int maxSteps) {
+	private List<XYChart<Number, ?>> charts() {
+		List<XYChart<Number, ?>> charts = new ArrayList<>();
+		charts.add(getReliabilityChart());
+		charts.add(getCostChart());
+		charts.add(getPerformanceChart());
+		charts.add(getPercentileChart());
+		return charts;
+	}
+
+	/**
+	 * Zoom around the cursor with the wheel, pan by dragging and go back to
+	 * the whole run with a double click
+	 */
+	private void installNavigation(XYChart<Number, ?> chart) {
+		NumberAxis xAxis = (NumberAxis) chart.getXAxis();
+
+		chart.setOnScroll(event -> {
+			double lower = xAxis.getLowerBound();
+			double upper = xAxis.getUpperBound();
+			double x = xAxis.sceneToLocal(event.getSceneX(), event.getSceneY()).getX();
+			double anchor = Math.max(lower, Math.min(upper, xAxis.getValueForDisplay(x).doubleValue()));
+			double factor = Math.pow(ZOOM_STEP, event.getDeltaY() / 40);
+			setViewport(anchor - (anchor - lower) * factor, anchor + (upper - anchor) * factor);
+			event.consume();
+		});
+
+		chart.setOnMousePressed(event -> dragX = event.getX());
+		chart.setOnMouseDragged(event -> {
+			if (event.getButton() != MouseButton.PRIMARY || xAxis.getWidth() <= 0)
+				return;
+			double lower = xAxis.getLowerBound();
+			double upper = xAxis.getUpperBound();
+			double shift = (dragX - event.getX()) * (upper - lower) / xAxis.getWidth();
+			dragX = event.getX();
+			setViewport(lower + shift, upper + shift);
+		});
+
+		chart.setOnMouseClicked(event -> {
+			if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2)
+				setViewport(0, maxSteps);
+		});
+	}
+
+	/**
+	 * Add the rows of the index from the given row on to the charts
+	 */
+	@Override
+	public void resultsAppended(ResultIndex index, int fromRow) {
 		try {
-			XYChart.Series<Number, Number> costSeries = new XYChart.Series<>();
-			;
+			int costSize = data.costSize;
+			int delayCount = data.delayCount;
+			data.append(index, fromRow, null);
+
+			CategoryAxis yAxis = (CategoryAxis) getReliabilityChart().getYAxis();
+			for (String service : data.getServices()) {
+				if (!yAxis.getCategories().contains(service))
+					yAxis.getCategories().add(service);
+			}
+			getReliabilityChart().appendData(data.invocations, data.serviceColumn, data.results, data.size,
+					data.failures);
+
+			if (data.costSize != costSize)
+				resampleCostData();
+			if (data.delayCount != delayCount) {
+				showPerformanceData();
+				showPercentileData();
+				showLatencyHeatmap();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
 
-			NumberAxis xAxis = new NumberAxis("Invocations", 0, maxSteps, 1);
-			if (maxSteps >= 100)
-				xAxis.setTickUnit(maxSteps / 20);
+	private void createReliabilityChart() {
+		NumberAxis xAxis = new NumberAxis("Invocations", 0, maxSteps, 1);
+		CategoryAxis yAxis = new CategoryAxis();
 
-			NumberAxis yAxis = new NumberAxis();
+		setReliabilityChart(new ReliabilityTimeline(xAxis, yAxis));
+		reliabilityChartPane.getChildren().add(getReliabilityChart());
+		getReliabilityChart().prefWidthProperty().bind(reliabilityChartPane.widthProperty());
+		getReliabilityChart().prefHeightProperty().bind(reliabilityChartPane.heightProperty());
 
-			setCostChart(new LineChart<Number, Number>(xAxis, yAxis));
-			costChartPane.getChildren().add(getCostChart());
-			getCostChart().prefWidthProperty().bind(costChartPane.widthProperty());
-			getCostChart().prefHeightProperty().bind(costChartPane.heightProperty());
+		getReliabilityChart().setLegendVisible(false);
 
-			getCostChart().setLegendVisible(false);
-			getCostChart().getData().clear();
+		yAxis.setAutoRanging(false);
+		yAxis.setCategories(FXCollections.<String>observableArrayList(ResultIndex.ASSISTANCE_SERVICE));
+	}
 
-			BufferedReader br = new BufferedReader(new FileReader(resultFilePath));
-			String line;
+	private void createCostChart() {
+		costSeries = new XYChart.Series<>();
 
-			double totalCost = 0;
-			int invocationNum = 0;
-			int minVocationNum = Integer.MAX_VALUE;
-			String service;
+		NumberAxis xAxis = new NumberAxis("Invocations", 0, maxSteps, 1);
 
-			costSeries.getData().clear();
+		NumberAxis yAxis = new NumberAxis();
 
-			costSeries.getData().add(new Data<Number, Number>(0, totalCost));
+		setCostChart(new LineChart<Number, Number>(xAxis, yAxis));
+		costChartPane.getChildren().add(getCostChart());
+		getCostChart().prefWidthProperty().bind(costChartPane.widthProperty());
+		getCostChart().prefHeightProperty().bind(costChartPane.heightProperty());
 
-			while ((line = br.readLine()) != null) {
-				String[] str = line.split(",");
-				if (str.length >= 3) {
-					invocationNum = Integer.parseInt(str[0]);
-					if (minVocationNum > invocationNum)
-						minVocationNum = invocationNum;
-					service = str[1];
+		getCostChart().setLegendVisible(false);
+		getCostChart().setCreateSymbols(false);
 
-					if (service.equals("AssistanceService")) {
-						totalCost = totalCost + Double.parseDouble(str[3]);
-						costSeries.getData().add(new Data<Number, Number>(invocationNum, totalCost));
-					}
-				}
-			}
-			br.close();
+		yAxis.setLabel("Cost");
+		yAxis.setLowerBound(0);
+		yAxis.setUpperBound(0);
+		yAxis.setTickUnit(100);
 
-			yAxis.setLabel("Cost");
-			yAxis.setLowerBound(0);
-			yAxis.setUpperBound(totalCost);
-			yAxis.setTickUnit(100);
+		getCostChart().getData().add(costSeries);
+	}
 
-			getCostChart().getData().add(costSeries);
-		} catch (Exception e) {
-			e.printStackTrace();
+	/**
+	 * Chart about one point per pixel of the visible part of the cost series,
+	 * picked with Largest-Triangle-Three-Buckets. The points just outside the
+	 * visible range are kept so the line reaches the edges. When far more
+	 * points are visible than there are pixels, the lowest and highest total of
+	 * every pixel column is read from the zoom pyramid instead.
+	 */
+	private void resampleCostData() {
+		if (getCostChart() == null || costSeries == null)
+			return;
+
+		NumberAxis xAxis = (NumberAxis) getCostChart().getXAxis();
+		double lower = xAxis.getLowerBound();
+		double upper = xAxis.getUpperBound();
+		int from = Math.max(0, Downsampling.lowerBound(data.costInvocations, 0, data.costSize, lower) - 1);
+		int to = Math.min(data.costSize, Downsampling.lowerBound(data.costInvocations, 0, data.costSize, upper) + 1);
+
+		int width = (int) costChartPane.getWidth();
+		int threshold = width > 0 ? width : DEFAULT_COST_POINTS;
+
+		List<Data<Number, Number>> points = new ArrayList<>();
+		if (to - from <= 4 * threshold || upper <= lower) {
+			for (int i : Downsampling.lttb(data.costInvocations, data.costTotals, from, to, threshold))
+				points.add(new Data<Number, Number>(data.costInvocations[i], data.costTotals[i]));
+		} else {
+			ZoomPyramid.Columns columns = new ZoomPyramid.Columns(threshold);
+			data.cost.query(lower, Math.nextUp(upper), columns);
+			double columnWidth = (upper - lower) / threshold;
+
+			points.add(new Data<Number, Number>(data.costInvocations[from], data.costTotals[from]));
+			for (int column = 0; column < threshold; column++) {
+				if (columns.getCount(column) == 0)
+					continue;
+				// the total only grows, so it starts a column at its lowest
+				double start = lower + column * columnWidth;
+				points.add(new Data<Number, Number>(start, columns.getMin(column)));
+				points.add(new Data<Number, Number>(start + columnWidth, columns.getMax(column)));
+			}
+			points.add(new Data<Number, Number>(data.costInvocations[to - 1], data.costTotals[to - 1]));
 		}
+		costSeries.getData().setAll(points);
+
+		((NumberAxis) getCostChart().getYAxis()).setUpperBound(data.totalCost);
 	}
 
-	public void generatePerformanceChart(String resultFilePath, int maxSteps) {
-		try {
+	private void createPerformanceChart() {
+		NumberAxis xAxis = new NumberAxis("Invocations", 0, maxSteps, 1);
 
-			CategoryAxis xAxis = new CategoryAxis();
-			xAxis.setLabel("Invocations");
-
-			NumberAxis yAxis = new NumberAxis();
-			yAxis.setLabel("Response Time / ms ");
-
-			setPerformanceChart(new StackedBarChart<String, Number>(xAxis, yAxis));
-			performanceChartPane.getChildren().add(getPerformanceChart());
-			getPerformanceChart().prefWidthProperty().bind(performanceChartPane.widthProperty());
-			getPerformanceChart().prefHeightProperty().bind(performanceChartPane.heightProperty());
-
-			BufferedReader br = new BufferedReader(new FileReader(resultFilePath));
-			String line;
-			String invocationNum;
-			String service;
-			String invisible = new String();
-			int tickUnit = maxSteps / 20;
-
-			Map<String, XYChart.Series<String, Number>> delays = new LinkedHashMap<>();
-
-			while ((line = br.readLine()) != null) {
-				String[] str = line.split(",");
-				if (str.length == 6) {
-
-					if (maxSteps >= 100 && Integer.parseInt(str[0]) % tickUnit != 0) {
-						invisible += (char) 29;
-						invocationNum = invisible;
-					} else
-						invocationNum = str[0];
-
-					service = str[1];
-
-					if (!service.equals("AssistanceService")) {
-						Double delay = Double.parseDouble(str[5]);
-
-						XYChart.Series<String, Number> delaySeries;
-						if (delays.containsKey(service))
-							delaySeries = delays.get(service);
-						else {
-							delaySeries = new XYChart.Series<>();
-							delaySeries.setName(service);
-							delays.put(service, delaySeries);
-						}
-						// categories.add(invocationNum);
-						delaySeries.getData().add(new XYChart.Data<String, Number>(invocationNum, delay));
-					}
-				}
-			}
-			br.close();
+		NumberAxis yAxis = new NumberAxis();
+		yAxis.setLabel("Response Time / ms ");
 
-			getPerformanceChart().setCategoryGap(getPerformanceChart().widthProperty().divide(maxSteps * 5).get());
+		setPerformanceChart(new StackedAreaChart<Number, Number>(xAxis, yAxis));
+		performanceChartPane.getChildren().add(getPerformanceChart());
+		getPerformanceChart().prefWidthProperty().bind(performanceChartPane.widthProperty());
+		getPerformanceChart().prefHeightProperty().bind(performanceChartPane.heightProperty());
 
-			List<String> categories = new ArrayList<>();
-			invisible = new String();
+		getPerformanceChart().setCreateSymbols(false);
+	}
+
+	/**
+	 * Chart the mean response time of every service per pixel wide bucket of
+	 * the visible invocations, read from the zoom pyramid of the service. The
+	 * series of a service are kept from run to run and only refilled, the ones
+	 * of services the run does not have are removed once it has response
+	 * times.
+	 */
+	private void showPerformanceData() {
+		if (getPerformanceChart() == null)
+			return;
+		if (data.delays.isEmpty()) {
+			for (XYChart.Series<Number, Number> delaySeries : delays.values())
+				delaySeries.getData().clear();
+			return;
+		}
+		for (String service : new ArrayList<>(delays.keySet())) {
+			if (!data.delays.containsKey(service))
+				getPerformanceChart().getData().remove(delays.remove(service));
+		}
 
-			for (int i = 0; i <= maxSteps; i++) {
-				if (maxSteps >= 100 && i % tickUnit != 0) {
-					invisible += (char) 29;
-					categories.add(invisible);
-				} else {
-					categories.add(String.valueOf(i));
-				}
+		NumberAxis xAxis = (NumberAxis) getPerformanceChart().getXAxis();
+		double lower = xAxis.getLowerBound();
+		double upper = Math.nextUp(xAxis.getUpperBound());
+		int width = (int) performanceChartPane.getWidth();
+		// no bucket narrower than an invocation, it would stay empty
+		int buckets = Math.max(1, Math.min(width > 0 ? width : DEFAULT_COST_POINTS, (int) Math.ceil(upper - lower)));
+		double bucketWidth = (upper - lower) / buckets;
+
+		ZoomPyramid.Columns columns = new ZoomPyramid.Columns(buckets);
+		for (Map.Entry<String, ZoomPyramid> entry : data.delays.entrySet()) {
+			entry.getValue().query(lower, upper, columns);
+
+			// the services take turns, a bucket without an invocation of the
+			// service is skipped and the chart joins the buckets around it
+			List<Data<Number, Number>> points = new ArrayList<>(buckets);
+			for (int bucket = 0; bucket < buckets; bucket++) {
+				if (columns.getCount(bucket) > 0)
+					points.add(new Data<Number, Number>(lower + (bucket + 0.5) * bucketWidth, columns.getMean(bucket)));
 			}
 
-			xAxis.setAutoRanging(false);
-			xAxis.setTickLabelsVisible(true);
-			xAxis.setCategories(FXCollections.<String>observableArrayList(categories));
-			xAxis.invalidateRange(categories);
+			XYChart.Series<Number, Number> delaySeries = delays.get(entry.getKey());
+			if (delaySeries == null) {
+				delaySeries = new XYChart.Series<>();
+				delaySeries.setName(entry.getKey());
+				delays.put(entry.getKey(), delaySeries);
+				delaySeries.getData().setAll(points);
+				getPerformanceChart().getData().add(delaySeries);
+			} else
+				delaySeries.getData().setAll(points);
+		}
+	}
 
-			getPerformanceChart().getData().addAll(delays.values());
+	private void createLatencyHeatmap() {
+		latencyHeatmap = new LatencyHeatmapView();
+		heatmapServiceComboBox = new ComboBox<>();
+		heatmapServiceComboBox.valueProperty().addListener((observable, oldValue, newValue) -> showLatencyHeatmap());
+		addServicePane(latencyHeatmapPane, heatmapServiceComboBox, latencyHeatmap);
+	}
 
-		} catch (Exception e) {
-			e.printStackTrace();
+	/**
+	 * Paint the latency heatmap of the selected service, the first one with
+	 * response times if none is selected yet
+	 */
+	private void showLatencyHeatmap() {
+		if (latencyHeatmap == null || selectService(heatmapServiceComboBox, data.heatmaps.keySet()))
+			return;
+
+		String service = heatmapServiceComboBox.getValue();
+		latencyHeatmap.setData(service != null ? data.heatmaps.get(service) : null, maxSteps);
+	}
+
+	private void createPercentileChart() {
+		NumberAxis xAxis = new NumberAxis("Invocations", 0, maxSteps, 1);
+		NumberAxis yAxis = new NumberAxis();
+		yAxis.setLabel("Response Time / ms ");
+
+		setPercentileChart(new LineChart<Number, Number>(xAxis, yAxis));
+		getPercentileChart().setCreateSymbols(false);
+		for (double percentile : PercentileSeries.PERCENTILES) {
+			XYChart.Series<Number, Number> series = new XYChart.Series<>();
+			series.setName("p" + (int) percentile);
+			getPercentileChart().getData().add(series);
 		}
+
+		percentileServiceComboBox = new ComboBox<>();
+		percentileServiceComboBox.valueProperty().addListener((observable, oldValue, newValue) -> showPercentileData());
+		addServicePane(percentileChartPane, percentileServiceComboBox, getPercentileChart());
 	}
 
-	public void clear() {
-		reliabilityChartPane.getChildren().clear();
-		costChartPane.getChildren().clear();
-		performanceChartPane.getChildren().clear();
+	/**
+	 * Chart the percentiles per window of the selected service, the windows are
+	 * few enough to chart them all
+	 */
+	private void showPercentileData() {
+		if (getPercentileChart() == null || selectService(percentileServiceComboBox, data.percentiles.keySet()))
+			return;
+
+		String service = percentileServiceComboBox.getValue();
+		PercentileSeries series = service != null ? data.percentiles.get(service) : null;
+		for (int p = 0; p < PercentileSeries.PERCENTILES.length; p++) {
+			List<Data<Number, Number>> points = new ArrayList<>();
+			for (int i = 0; series != null && i < series.size(); i++)
+				points.add(new Data<Number, Number>(series.getInvocation(i), series.getPercentile(i, p)));
+			getPercentileChart().getData().get(p).getData().setAll(points);
+		}
 	}
 
-	public Data<Number, String> createReliabilityData(int num, String service, boolean result, int maxSteps) {
-		Data<Number, String> data = new Data<Number, String>(num, service);
-		if (result) {
+	/**
+	 * Fill the pane with the content and a service selector above it
+	 */
+	private static void addServicePane(AnchorPane parent, ComboBox<String> comboBox, Node content) {
+		HBox serviceBox = new HBox(5, new Label("Service"), comboBox);
+		serviceBox.setPadding(new Insets(5));
+
+		BorderPane pane = new BorderPane(content);
+		pane.setTop(serviceBox);
+		AnchorPane.setTopAnchor(pane, 0.0);
+		AnchorPane.setBottomAnchor(pane, 0.0);
+		AnchorPane.setLeftAnchor(pane, 0.0);
+		AnchorPane.setRightAnchor(pane, 0.0);
+		parent.getChildren().add(pane);
+	}
 
-			Rectangle rect = new Rectangle();
-			rect.setHeight(20);
-			rect.widthProperty().bind(getReliabilityChart().widthProperty().divide(maxSteps).divide(3));
-			rect.setFill(Color.LIMEGREEN);
-			data.setNode(rect);
-			data.setNode(rect);
-		} else {
-			Rectangle rect = new Rectangle();
-			rect.setHeight(40);
-			rect.widthProperty().bind(getReliabilityChart().widthProperty().divide(maxSteps).divide(2));
-			rect.setFill(Color.RED);
-			data.setNode(rect);
-			data.setNode(rect);
+	/**
+	 * Add the new services to the selector and select the first one if none is
+	 * selected yet
+	 *
+	 * @return true if a service was just selected, the value listener then
+	 *         shows it
+	 */
+	private static boolean selectService(ComboBox<String> comboBox, Collection<String> services) {
+		for (String service : services) {
+			if (!comboBox.getItems().contains(service))
+				comboBox.getItems().add(service);
+		}
+		if (comboBox.getValue() == null && !comboBox.getItems().isEmpty()) {
+			comboBox.setValue(comboBox.getItems().get(0));
+			return true;
 		}
-		return data;
+		return false;
+	}
+
+	/**
+	 * Empty the selector for a new run, the selected service stays selected if
+	 * the run has it
+	 */
+	private static void resetService(ComboBox<String> comboBox, Collection<String> services) {
+		String service = comboBox.getValue();
+		comboBox.getItems().clear();
+		if (service != null && !services.contains(service))
+			comboBox.setValue(null);
 	}
 
-	public ScatterChart<Number, String> getReliabilityChart() {
+	/**
+	 * Remove the data of the charts, the charts themselves are kept
+	 */
+	public void clear() {
+		this.show(new ChartData(maxSteps));
+	}
+
+	public ReliabilityTimeline getReliabilityChart() {
 		return reliabilityChart;
 	}
 
-	public void setReliabilityChart(ScatterChart<Number, String> reliabilityChart) {
+	public void setReliabilityChart(ReliabilityTimeline reliabilityChart) {
 		this.reliabilityChart = reliabilityChart;
 	}
 
-	public StackedBarChart<String, Number> getPerformanceChart() {
+	public StackedAreaChart<Number, Number> getPerformanceChart() {
 		return performanceChart;
 	}
 
-	public void setPerformanceChart(StackedBarChart<String, Number> performanceChart) {
+	public void setPerformanceChart(StackedAreaChart<Number, Number> performanceChart) {
 		this.performanceChart = performanceChart;
 	}
 
+	public LineChart<Number, Number> getPercentileChart() {
+		return percentileChart;
+	}
+
+	public void setPercentileChart(LineChart<Number, Number> percentileChart) {
+		this.percentileChart = percentileChart;
+	}
+
 	public LineChart<Number, Number> getCostChart() {
 		return costChart;
 	}
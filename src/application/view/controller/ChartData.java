@@ -0,0 +1,166 @@
+package application.view.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import application.result.LatencyHeatmap;
+import application.result.PercentileSeries;
+import application.result.ResultIndex;
+import application.utility.CancellationToken;
+import application.utility.ZoomPyramid;
+
+/**
+ * Data behind the three charts of a run, kept in primitive arrays: the
+ * outcomes for the reliability chart, the cumulative cost points and the
+ * response times. Outcomes (1 for a failure), cost and response times are also
+ * kept in zoom pyramids, per service where it applies, so any range of
+ * invocations can be charted from about as many values as there are pixels.
+ * The response times are counted per latency bucket as well, for the heatmap,
+ * and summed up in percentiles per window of invocations.
+ * It does not touch the scene graph, so a saved run can be prepared on a
+ * background thread and handed to the charts in one go.
+ */
+public class ChartData {
+
+	// rows between two checks of the cancellation token
+	private static final int CHECK_INTERVAL = 64 * 1024;
+
+	// windows of the percentile series over a whole run
+	private static final int PERCENTILE_WINDOWS = 200;
+
+	private int maxSteps;
+
+	private List<String> services = new ArrayList<>();
+
+	int size;
+	int[] invocations = new int[1024];
+	String[] serviceColumn = new String[1024];
+	boolean[] results = new boolean[1024];
+	Map<String, ZoomPyramid> failures = new LinkedHashMap<>();
+
+	int costSize;
+	double[] costInvocations = new double[1024];
+	double[] costTotals = new double[1024];
+	double totalCost;
+	ZoomPyramid cost = new ZoomPyramid();
+
+	int delayCount;
+	Map<String, ZoomPyramid> delays = new LinkedHashMap<>();
+	Map<String, LatencyHeatmap> heatmaps = new LinkedHashMap<>();
+	Map<String, PercentileSeries> percentiles = new LinkedHashMap<>();
+
+	public ChartData(int maxSteps) {
+		this.maxSteps = maxSteps;
+		addCostPoint(0, totalCost);
+	}
+
+	/**
+	 * Prepare the data of a whole run, meant to run off the FX thread
+	 *
+	 * @param index
+	 *            the rows of the run
+	 * @param maxSteps
+	 *            the number of invocations of the run
+	 * @param token
+	 *            checked while preparing, may be null
+	 * @return the data, null if the token was cancelled
+	 */
+	public static ChartData prepare(ResultIndex index, int maxSteps, CancellationToken token) {
+		ChartData data = new ChartData(maxSteps);
+		return data.append(index, 0, token) ? data : null;
+	}
+
+	/**
+	 * Add the rows of the index from the given row on
+	 *
+	 * @return false if the token was cancelled before all the rows were added
+	 */
+	public boolean append(ResultIndex index, int fromRow, CancellationToken token) {
+		for (String service : index.getServices()) {
+			if (!services.contains(service))
+				services.add(service);
+		}
+
+		for (int row = fromRow; row < index.size(); row++) {
+			if (token != null && (row - fromRow) % CHECK_INTERVAL == 0 && token.isCancelled())
+				return false;
+
+			String service = index.getService(row);
+			addOutcome(index.getInvocation(row), service, index.getResult(row));
+
+			if (service.equals(ResultIndex.ASSISTANCE_SERVICE)) {
+				totalCost = totalCost + index.getCost(row);
+				addCostPoint(index.getInvocation(row), totalCost);
+			} else if (index.hasDelay(row))
+				addDelay(index.getInvocation(row), service, index.getDelay(row));
+		}
+		return true;
+	}
+
+	private void addOutcome(int invocationNum, String service, boolean result) {
+		if (size == invocations.length) {
+			invocations = Arrays.copyOf(invocations, size * 2);
+			serviceColumn = Arrays.copyOf(serviceColumn, size * 2);
+			results = Arrays.copyOf(results, size * 2);
+		}
+		invocations[size] = invocationNum;
+		serviceColumn[size] = service;
+		results[size] = result;
+		size++;
+
+		pyramid(failures, service).add(invocationNum, result ? 0 : 1);
+	}
+
+	private void addCostPoint(double invocation, double total) {
+		if (costSize == costInvocations.length) {
+			costInvocations = Arrays.copyOf(costInvocations, costSize * 2);
+			costTotals = Arrays.copyOf(costTotals, costSize * 2);
+		}
+		costInvocations[costSize] = invocation;
+		costTotals[costSize] = total;
+		costSize++;
+		cost.add((int) invocation, total);
+	}
+
+	private void addDelay(int invocationNum, String service, double delay) {
+		pyramid(delays, service).add(invocationNum, delay);
+		delayCount++;
+
+		LatencyHeatmap heatmap = heatmaps.get(service);
+		if (heatmap == null) {
+			heatmap = new LatencyHeatmap();
+			heatmaps.put(service, heatmap);
+		}
+		heatmap.add(invocationNum, delay);
+
+		PercentileSeries series = percentiles.get(service);
+		if (series == null) {
+			series = new PercentileSeries((maxSteps + PERCENTILE_WINDOWS) / PERCENTILE_WINDOWS);
+			percentiles.put(service, series);
+		}
+		series.add(invocationNum, delay);
+	}
+
+	private static ZoomPyramid pyramid(Map<String, ZoomPyramid> pyramids, String service) {
+		ZoomPyramid pyramid = pyramids.get(service);
+		if (pyramid == null) {
+			pyramid = new ZoomPyramid();
+			pyramids.put(service, pyramid);
+		}
+		return pyramid;
+	}
+
+	public int getMaxSteps() {
+		return maxSteps;
+	}
+
+	/**
+	 * @return the service names in the order they first appear
+	 */
+	public List<String> getServices() {
+		return services;
+	}
+}
@@ -0,0 +1,224 @@
+package application.view.controller;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import application.result.PercentileSeries;
+import application.utility.CancellationToken;
+import javafx.application.Platform;
+import javafx.fxml.FXML;
+import javafx.fxml.Initializable;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.chart.XYChart.Data;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.FlowPane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.stage.Stage;
+
+/**
+ * Overlays the cumulative cost, reliability and response time percentiles of
+ * several saved runs, with a colour per run. The runs are read in parallel,
+ * each one is charted as soon as it is ready.
+ */
+public class CompareController implements Initializable {
+
+	private static final String[] COLORS = { "#1f77b4", "#ff7f0e", "#2ca02c", "#d62728", "#9467bd", "#8c564b",
+			"#e377c2", "#7f7f7f", "#bcbd22", "#17becf" };
+
+	@FXML
+	private ComboBox<String> serviceComboBox;
+
+	@FXML
+	private ComboBox<String> percentileComboBox;
+
+	@FXML
+	private ProgressBar progressBar;
+
+	@FXML
+	private FlowPane legendPane;
+
+	@FXML
+	private AnchorPane costChartPane;
+
+	@FXML
+	private AnchorPane reliabilityChartPane;
+
+	@FXML
+	private AnchorPane latencyChartPane;
+
+	private LineChart<Number, Number> costChart;
+	private LineChart<Number, Number> reliabilityChart;
+	private LineChart<Number, Number> latencyChart;
+
+	private Stage stage;
+
+	private List<File> files = new ArrayList<>();
+	// the runs in the order they were ready, with their colour
+	private List<CompareData> runs = new ArrayList<>();
+	private List<String> colors = new ArrayList<>();
+	private List<Label> legends = new ArrayList<>();
+	private int done;
+
+	private CancellationToken token = new CancellationToken();
+	private ExecutorService executor;
+
+	@Override
+	public void initialize(URL arg0, ResourceBundle arg1) {
+		costChart = createChart(costChartPane, "Cost");
+		reliabilityChart = createChart(reliabilityChartPane, "Reliability / %");
+		latencyChart = createChart(latencyChartPane, "Response Time / ms ");
+
+		for (double percentile : PercentileSeries.PERCENTILES)
+			percentileComboBox.getItems().add("p" + (int) percentile);
+		percentileComboBox.setValue(percentileComboBox.getItems().get(percentileComboBox.getItems().size() - 2));
+
+		serviceComboBox.valueProperty().addListener((observable, oldValue, newValue) -> showLatencyData());
+		percentileComboBox.valueProperty().addListener((observable, oldValue, newValue) -> showLatencyData());
+	}
+
+	public void setStage(Stage stage) {
+		this.stage = stage;
+		this.stage.setOnHidden(event -> {
+			token.cancel();
+			if (executor != null)
+				executor.shutdownNow();
+		});
+	}
+
+	/**
+	 * Read the runs on a thread pool and chart every one of them when it is
+	 * ready
+	 *
+	 * @param files
+	 *            result files or run archives
+	 */
+	public void compare(List<File> files) {
+		this.files = new ArrayList<>(files);
+		for (int i = 0; i < files.size(); i++) {
+			Label legend = new Label(files.get(i).getName(), new Rectangle(12, 12, Color.web(colorOf(i))));
+			legend.setDisable(true);
+			legends.add(legend);
+		}
+		legendPane.getChildren().setAll(legends);
+
+		executor = Executors
+				.newFixedThreadPool(Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors())));
+		for (int i = 0; i < files.size(); i++) {
+			final int run = i;
+			executor.execute(() -> {
+				CompareData data = null;
+				try {
+					data = CompareData.prepare(this.files.get(run), token);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+				final CompareData prepared = data;
+				Platform.runLater(() -> add(run, prepared));
+			});
+		}
+		executor.shutdown();
+	}
+
+	private void add(int run, CompareData data) {
+		if (token.isCancelled())
+			return;
+
+		done++;
+		progressBar.setProgress((double) done / files.size());
+		if (data == null) {
+			legends.get(run).setText(files.get(run).getName() + " (failed)");
+			return;
+		}
+
+		legends.get(run).setDisable(false);
+		runs.add(data);
+		colors.add(colorOf(run));
+
+		addSeries(costChart, data.costInvocations, data.costTotals, colorOf(run));
+		addSeries(reliabilityChart, data.reliabilityInvocations, data.reliabilities, colorOf(run));
+
+		for (String service : data.percentiles.keySet()) {
+			if (!serviceComboBox.getItems().contains(service))
+				serviceComboBox.getItems().add(service);
+		}
+		if (serviceComboBox.getValue() == null && !serviceComboBox.getItems().isEmpty())
+			serviceComboBox.setValue(serviceComboBox.getItems().get(0));
+		else
+			showLatencyData();
+	}
+
+	/**
+	 * Chart the selected percentile of the selected service for every run
+	 * holding response times of that service
+	 */
+	private void showLatencyData() {
+		latencyChart.getData().clear();
+		String service = serviceComboBox.getValue();
+		int p = percentileComboBox.getItems().indexOf(percentileComboBox.getValue());
+		if (service == null || p < 0)
+			return;
+
+		for (int i = 0; i < runs.size(); i++) {
+			PercentileSeries series = runs.get(i).percentiles.get(service);
+			if (series == null)
+				continue;
+
+			double[] invocations = new double[series.size()];
+			double[] values = new double[series.size()];
+			for (int window = 0; window < series.size(); window++) {
+				invocations[window] = series.getInvocation(window);
+				values[window] = series.getPercentile(window, p);
+			}
+			addSeries(latencyChart, invocations, values, colors.get(i));
+		}
+	}
+
+	/**
+	 * @return the colour of the run, by its position in the selection so it
+	 *         does not depend on the order the runs are ready in
+	 */
+	private static String colorOf(int run) {
+		return COLORS[run % COLORS.length];
+	}
+
+	private static void addSeries(LineChart<Number, Number> chart, double[] xs, double[] ys, String color) {
+		List<Data<Number, Number>> points = new ArrayList<>(xs.length);
+		for (int i = 0; i < xs.length; i++)
+			points.add(new Data<Number, Number>(xs[i], ys[i]));
+
+		XYChart.Series<Number, Number> series = new XYChart.Series<>();
+		series.getData().setAll(points);
+		chart.getData().add(series);
+		series.getNode().setStyle("-fx-stroke: " + color + ";");
+	}
+
+	private static LineChart<Number, Number> createChart(AnchorPane pane, String label) {
+		NumberAxis xAxis = new NumberAxis();
+		xAxis.setLabel("Invocations");
+		NumberAxis yAxis = new NumberAxis();
+		yAxis.setLabel(label);
+
+		LineChart<Number, Number> chart = new LineChart<Number, Number>(xAxis, yAxis);
+		chart.setCreateSymbols(false);
+		chart.setLegendVisible(false);
+		chart.setAnimated(false);
+
+		AnchorPane.setTopAnchor(chart, 0.0);
+		AnchorPane.setBottomAnchor(chart, 0.0);
+		AnchorPane.setLeftAnchor(chart, 0.0);
+		AnchorPane.setRightAnchor(chart, 0.0);
+		pane.getChildren().add(chart);
+		return chart;
+	}
+}
@@ -0,0 +1,125 @@
+package application.view.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import application.result.PercentileSeries;
+import application.result.ResultIndex;
+import application.utility.CancellationToken;
+import application.utility.Downsampling;
+
+/**
+ * What the comparison charts keep of a saved run: its cumulative cost
+ * downsampled to a fixed number of points, the reliability of the composite
+ * service per window of invocations and the response time percentiles per
+ * window and service. The rows of the run are dropped once this is prepared,
+ * so many runs can be compared at once.
+ */
+public class CompareData {
+
+	// points kept of the cost curve of a run
+	private static final int COST_POINTS = 1000;
+
+	// windows of the reliability and percentile series over a run
+	private static final int WINDOWS = 200;
+
+	// rows between two checks of the cancellation token
+	private static final int CHECK_INTERVAL = 64 * 1024;
+
+	String name;
+
+	double[] costInvocations;
+	double[] costTotals;
+
+	double[] reliabilityInvocations;
+	double[] reliabilities;
+
+	Map<String, PercentileSeries> percentiles = new LinkedHashMap<>();
+
+	/**
+	 * Read a run and keep what is compared of it, meant to run off the FX
+	 * thread
+	 *
+	 * @param file
+	 *            a result file or run archive
+	 * @param token
+	 *            checked while preparing, may be null
+	 * @return the data, null if the token was cancelled
+	 * @throws IOException
+	 *             if the run can not be read
+	 */
+	public static CompareData prepare(File file, CancellationToken token) throws IOException {
+		ResultIndex index = ResultIndex.open(file.getPath());
+		int maxSteps = index.getMaxInvocation();
+		int windowWidth = (maxSteps + WINDOWS) / WINDOWS;
+		int windows = maxSteps / windowWidth + 1;
+		int[] invocations = new int[windows];
+		int[] successes = new int[windows];
+
+		int costSize = 1;
+		double[] costInvocations = new double[1024];
+		double[] costTotals = new double[1024];
+		double totalCost = 0;
+
+		CompareData data = new CompareData();
+		data.name = file.getName();
+
+		for (int row = 0; row < index.size(); row++) {
+			if (token != null && row % CHECK_INTERVAL == 0 && token.isCancelled())
+				return null;
+
+			int invocation = Math.max(0, index.getInvocation(row));
+			if (index.getService(row).equals(ResultIndex.ASSISTANCE_SERVICE)) {
+				totalCost = totalCost + index.getCost(row);
+				if (costSize == costInvocations.length) {
+					costInvocations = Arrays.copyOf(costInvocations, costSize * 2);
+					costTotals = Arrays.copyOf(costTotals, costSize * 2);
+				}
+				costInvocations[costSize] = invocation;
+				costTotals[costSize] = totalCost;
+				costSize++;
+
+				int window = invocation / windowWidth;
+				invocations[window]++;
+				if (index.getResult(row))
+					successes[window]++;
+			} else if (index.hasDelay(row)) {
+				PercentileSeries series = data.percentiles.get(index.getService(row));
+				if (series == null) {
+					series = new PercentileSeries(windowWidth);
+					data.percentiles.put(index.getService(row), series);
+				}
+				series.add(invocation, index.getDelay(row));
+			}
+		}
+
+		int[] sampled = Downsampling.lttb(costInvocations, costTotals, 0, costSize, COST_POINTS);
+		data.costInvocations = new double[sampled.length];
+		data.costTotals = new double[sampled.length];
+		for (int i = 0; i < sampled.length; i++) {
+			data.costInvocations[i] = costInvocations[sampled[i]];
+			data.costTotals[i] = costTotals[sampled[i]];
+		}
+
+		int size = 0;
+		data.reliabilityInvocations = new double[windows];
+		data.reliabilities = new double[windows];
+		for (int window = 0; window < windows; window++) {
+			if (invocations[window] == 0)
+				continue;
+			data.reliabilityInvocations[size] = (window + 0.5) * windowWidth;
+			data.reliabilities[size] = 100.0 * successes[window] / invocations[window];
+			size++;
+		}
+		data.reliabilityInvocations = Arrays.copyOf(data.reliabilityInvocations, size);
+		data.reliabilities = Arrays.copyOf(data.reliabilities, size);
+		return data;
+	}
+
+	public String getName() {
+		return name;
+	}
+}
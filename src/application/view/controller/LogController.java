@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
@@ -12,12 +13,13 @@ import java.util.ResourceBundle;
 
 import application.log.Log;
 import application.log.LogEntry;
+import application.log.LogQuery;
+import application.log.LogSearch;
 import application.log.Report;
-import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.DateCell;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.TableColumn;
@@ -38,6 +40,9 @@ public class LogController implements Initializable{
 	@FXML
 	private TextField filterTextField;
 	
+	@FXML
+	private ComboBox<String> titleComboBox;
+	
 	@FXML
 	private DatePicker fromDatePicker;
 	
@@ -52,8 +57,13 @@ public class LogController implements Initializable{
 	
 	private Stage stage;
 	
-	private FilteredList<LogEntry> filteredData = new FilteredList<>(Log.logData,p->true);
+	private LogSearch search;
+	
+	// the time range of the days picked, in epoch ms
+	private long from;
+	private long to;
 	
+    private final static String ALL_TITLES = "All titles";
     private final static String PATTERN = "yyyy-MM-dd";
 
 
@@ -100,6 +110,9 @@ public class LogController implements Initializable{
 		    		
 		    	report.addSentence(date.toString());
 		    	
+		    	if(titleComboBox.getValue()!=null && !titleComboBox.getValue().equals(ALL_TITLES))
+		    		report.addSentence("Title: "+titleComboBox.getValue());
+		    	
 		    	if(!filterTextField.getText().isEmpty())
 		    		report.addSentence("Filter: "+filterTextField.getText());
 		    	
@@ -107,7 +120,7 @@ public class LogController implements Initializable{
 		    	String[] columns={"Time","Title","Message"};
 
 		    	List<String> values=new ArrayList<>();
-		    	for(LogEntry entry:filteredData){
+		    	for(LogEntry entry:logTableView.getItems()){
 		    		values.add(entry.getTime());
 		    		values.add(entry.getTitle());
 		    		values.add(entry.getMessage());
@@ -183,59 +196,72 @@ public class LogController implements Initializable{
             toDatePicker.setDayCellFactory(dayCellFactory);
 	}
 	
+	/**
+	 * The days picked, the title and the text make up one LogQuery, run on the
+	 * paged log whenever one of them changes
+	 */
 	private void initializeFilter(){
 		
 		fromDatePicker.valueProperty().addListener((observable, oldValue, newValue)->{
-            filteredData.setPredicate(log -> {
-                if (newValue == null) {
-                    return true;
-                }
-                String date=log.getTime().split(" ")[0];
-                String fromDate=newValue.toString();
-                
-                return date.compareTo(fromDate)>=0 ;
-             });
+			updateRange(true);
+			search();
 		});
 		
 		toDatePicker.valueProperty().addListener((observable, oldValue, newValue)->{
-            filteredData.setPredicate(log -> {
-                if (newValue == null) {
-                    return true;
-                }
-
-                String date=log.getTime().split(" ")[0];
-                String fromDate=newValue.toString();
-                
-                return date.compareTo(fromDate)<=0 ;
-             });
+			updateRange(true);
+			search();
 		});
 		
+		titleComboBox.getItems().add(ALL_TITLES);
+		titleComboBox.setValue(ALL_TITLES);
+		titleComboBox.setOnShowing(event -> {
+			String title = titleComboBox.getValue();
+			titleComboBox.getItems().setAll(ALL_TITLES);
+			titleComboBox.getItems().addAll(Log.logIndex.getTitles());
+			titleComboBox.setValue(title);
+		});
+		titleComboBox.valueProperty().addListener((observable, oldValue, newValue) -> search());
 		
-		filterTextField.textProperty().addListener((observable, oldValue, newValue) -> {
-			
-            filteredData.setPredicate(log -> {
-                if (newValue == null || newValue.isEmpty()) {
-                    return true;
-                }
+		filterTextField.textProperty().addListener((observable, oldValue, newValue) -> search());
 
-                String lowerCaseFilter = newValue.toLowerCase();
-
-                if (log.getTitle().toLowerCase().indexOf(lowerCaseFilter) != -1) {
-                    return true; 
-                } else if (log.getMessage().toLowerCase().indexOf(lowerCaseFilter) != -1) {
-                    return true; 
-                }
-                return false; 
-            });
-        });
-
-        SortedList<LogEntry> sortedData = new SortedList<>(filteredData);
-                
-        sortedData.comparatorProperty().bind(logTableView.comparatorProperty());
-
-        logTableView.setItems(sortedData);
+		updateRange(false);
+		search();
+	}
+	
+	/**
+	 * Take the days picked, without days picked the recent entries are shown
+	 *
+	 * @param index
+	 *            whether the log index should follow the days picked
+	 */
+	private void updateRange(boolean index) {
+		LocalDate fromDate = fromDatePicker.getValue();
+		LocalDate toDate = toDatePicker.getValue();
+		if (fromDate == null && toDate == null) {
+			from = System.currentTimeMillis() - Log.RECENT;
+			to = Long.MAX_VALUE;
+		} else {
+			from = fromDate != null ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()
+					: Long.MIN_VALUE;
+			to = toDate != null
+					? toDate.plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli() - 1
+					: Long.MAX_VALUE;
+		}
+		if (index)
+			Log.index(from, to);
 	}
 	
+	private void search() {
+		String title = titleComboBox.getValue();
+		LogQuery query = new LogQuery(from, to, title == null || title.equals(ALL_TITLES) ? null : title,
+				filterTextField.getText());
+
+		if (search != null)
+			search.dispose();
+		search = new LogSearch(Log.logData, Log.logIndex, query);
+		logTableView.setItems(search);
+	}
+
 	private void generateTableView(){
 		TableColumn<LogEntry,String> timeColumn = new TableColumn<LogEntry,String>("Time");
 		timeColumn.setCellValueFactory(new PropertyValueFactory<LogEntry, String>("time"));
@@ -249,9 +275,12 @@ public class LogController implements Initializable{
 		messageColumn.setCellValueFactory(new PropertyValueFactory<LogEntry, String>("message"));
 		messageColumn.prefWidthProperty().bind(logTableView.widthProperty().divide(6).multiply(4));
 
-		logTableView.getColumns().addAll(timeColumn,titleColumn,messageColumn);	
-		timeColumn.setSortType(TableColumn.SortType.DESCENDING);
-		logTableView.getSortOrder().add(timeColumn);
+		// the entries are paged in time order, sorting would read all of them
+		timeColumn.setSortable(false);
+		titleColumn.setSortable(false);
+		messageColumn.setSortable(false);
+
+		logTableView.getColumns().addAll(timeColumn,titleColumn,messageColumn);
 	}
 
 }
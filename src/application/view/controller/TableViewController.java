@@ -1,6 +1,5 @@
 package application.view.controller;
-import java.io.BufferedReader;
-import java.io.FileReader;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,8 +11,13 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import application.model.CostEntry;
 import application.model.PerformanceEntry;
 import application.model.ReliabilityEntry;
+import application.result.ResultIndex;
+import application.result.ReliabilityWindow;
+import application.result.ResultListener;
+import application.result.RunSummary;
+import application.result.ServiceStatistics;
 
-public class TableViewController {
+public class TableViewController implements ResultListener {
 
 	private TableView<ReliabilityEntry> reliabilityTableView;
 	private TableView<CostEntry> costTableView;
@@ -23,6 +27,12 @@ public class TableViewController {
 	private ObservableList<CostEntry> costData = FXCollections.observableArrayList();
 	private ObservableList<PerformanceEntry> performanceData = FXCollections.observableArrayList();
 
+	private Map<String, ReliabilityEntry> reliabilityEntries = new HashMap<>();
+	private Map<String, CostEntry> costEntries = new HashMap<>();
+	private Map<String, PerformanceEntry> performanceEntries = new HashMap<>();
+	private CostEntry totalCostEntry;
+	private Map<String, ReliabilityWindow> reliabilityWindows = new HashMap<>();
+
 	
 	public TableViewController(TableView<ReliabilityEntry> reliabilityTableView,
 			TableView<CostEntry> costTableView,TableView<PerformanceEntry> performanceTableView){
@@ -34,93 +44,149 @@ public class TableViewController {
 		this.generateCostTableView();
 		this.generatePerformanceTableView();
 		
-		
+
 	}
 	
 	private void generatePerformanceTableView(){	
 		TableColumn<PerformanceEntry,String> serviceColumn = new TableColumn<PerformanceEntry,String>("Service");
 		serviceColumn.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, String>("service"));
-		serviceColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(6).multiply(2));
+		serviceColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10).multiply(2));
 		
 		TableColumn<PerformanceEntry,Integer> invocationColumn = new TableColumn<PerformanceEntry,Integer>("Invocations");
 		invocationColumn.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, Integer>("invocationNum"));
-		invocationColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(6));
+		invocationColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10));
 
 		TableColumn<PerformanceEntry,Integer> failColumn = new TableColumn<PerformanceEntry,Integer>("Fail");
 		failColumn.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, Integer>("failNum"));
-		failColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(6));
+		failColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10));
 
 		TableColumn<PerformanceEntry,Double> avgResponseTimeColumn = new TableColumn<PerformanceEntry,Double>("AvgResponseTime");
 		avgResponseTimeColumn.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, Double>("avgResponseTime"));
-		avgResponseTimeColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(6).multiply(2));
+		avgResponseTimeColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10).multiply(2));
+		
+		TableColumn<PerformanceEntry,Double> p50Column = new TableColumn<PerformanceEntry,Double>("P50");
+		p50Column.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, Double>("p50ResponseTime"));
+		p50Column.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10));
+		
+		TableColumn<PerformanceEntry,Double> p90Column = new TableColumn<PerformanceEntry,Double>("P90");
+		p90Column.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, Double>("p90ResponseTime"));
+		p90Column.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10));
+		
+		TableColumn<PerformanceEntry,Double> p99Column = new TableColumn<PerformanceEntry,Double>("P99");
+		p99Column.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, Double>("p99ResponseTime"));
+		p99Column.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10));
+		
+		TableColumn<PerformanceEntry,Double> maxColumn = new TableColumn<PerformanceEntry,Double>("Max");
+		maxColumn.setCellValueFactory(new PropertyValueFactory<PerformanceEntry, Double>("maxResponseTime"));
+		maxColumn.prefWidthProperty().bind(performanceTableView.widthProperty().divide(10));
 		
 		performanceTableView.setItems(performanceData);
-		performanceTableView.getColumns().addAll(serviceColumn,invocationColumn,failColumn,avgResponseTimeColumn);
+		performanceTableView.getColumns().addAll(serviceColumn,invocationColumn,failColumn,avgResponseTimeColumn,
+				p50Column,p90Column,p99Column,maxColumn);
 	}
 	
 	private void generateReliabilityTableView(){
 		
 		TableColumn<ReliabilityEntry,String> serviceColumn = new TableColumn<ReliabilityEntry,String>("Service");
 		serviceColumn.setCellValueFactory(new PropertyValueFactory<ReliabilityEntry, String>("service"));
-		serviceColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(6).multiply(2));
+		serviceColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(8).multiply(2));
 		
 		TableColumn<ReliabilityEntry,Integer> invocationColumn = new TableColumn<ReliabilityEntry,Integer>("Invocations");
 		invocationColumn.setCellValueFactory(new PropertyValueFactory<ReliabilityEntry, Integer>("invocationNum"));
-		invocationColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(6));
+		invocationColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(8));
 
 		TableColumn<ReliabilityEntry,Integer> failColumn = new TableColumn<ReliabilityEntry,Integer>("Fail");
 		failColumn.setCellValueFactory(new PropertyValueFactory<ReliabilityEntry, Integer>("failNum"));
-		failColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(6));
+		failColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(8));
 
 		TableColumn<ReliabilityEntry,Double> failRateColumn = new TableColumn<ReliabilityEntry,Double>("FailRate");
 		failRateColumn.setCellValueFactory(new PropertyValueFactory<ReliabilityEntry, Double>("failRate"));
-		failRateColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(6));
+		failRateColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(8));
 		
 		TableColumn<ReliabilityEntry,Double> successRateColumn = new TableColumn<ReliabilityEntry,Double>("SuccessRate");
 		successRateColumn.setCellValueFactory(new PropertyValueFactory<ReliabilityEntry, Double>("successRate"));
-		successRateColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(6));
+		successRateColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(8));
+
+		TableColumn<ReliabilityEntry,Double> windowFailRateColumn = new TableColumn<ReliabilityEntry,Double>(
+				"FailRate (last " + ReliabilityWindow.DEFAULT_INVOCATIONS + ")");
+		windowFailRateColumn.setCellValueFactory(new PropertyValueFactory<ReliabilityEntry, Double>("windowFailRate"));
+		windowFailRateColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(8));
+
+		TableColumn<ReliabilityEntry,Double> recentFailRateColumn = new TableColumn<ReliabilityEntry,Double>(
+				"FailRate (last " + ReliabilityWindow.DEFAULT_SECONDS + "s)");
+		recentFailRateColumn.setCellValueFactory(new PropertyValueFactory<ReliabilityEntry, Double>("recentFailRate"));
+		recentFailRateColumn.prefWidthProperty().bind(reliabilityTableView.widthProperty().divide(8));
 
 		reliabilityTableView.setItems(reliabilityData);
-		reliabilityTableView.getColumns().addAll(serviceColumn,invocationColumn,failColumn,failRateColumn,successRateColumn);
+		reliabilityTableView.getColumns().addAll(serviceColumn,invocationColumn,failColumn,failRateColumn,successRateColumn,
+				windowFailRateColumn,recentFailRateColumn);
 	}
 	
-	public void fillReliabilityDate(String resultFilePath){
-		
-		Map<String,ReliabilityEntry> reliabilityEntries=new HashMap<>();
-		try{
-			BufferedReader br = new BufferedReader(new FileReader(resultFilePath));
-			String line;
-			String service;
-			boolean result;
-			while ((line = br.readLine()) != null) {
-				String[] str=line.split(",");
-				if(str.length>=3){					
-					service=str[1];
-					result=Boolean.parseBoolean(str[2]);					
-					
-					if(!reliabilityEntries.containsKey(service)){
-						reliabilityEntries.put(service, new ReliabilityEntry(service));
-					}
-					ReliabilityEntry reliabilityEntry=reliabilityEntries.get(service);
-
-					reliabilityEntry.setInvocationNum(reliabilityEntry.getInvocationNum()+1);
-					if(!result)
-						reliabilityEntry.setFailNum(reliabilityEntry.getFailNum()+1);				
-				}
-			}
-			br.close();	
-			for (ReliabilityEntry entry : reliabilityEntries.values()) {
-				entry.setRate();
-				if(!entry.getService().equals("AssistanceService"))
+	/**
+	 * Bring the three tables up to date with the aggregates of a run, the
+	 * existing entries are updated in place
+	 */
+	public void update(RunSummary summary){
+		this.updateReliabilityData(summary);
+		this.updateCostData(summary);
+		this.updatePerformanceData(summary);
+	}
+	
+	/**
+	 * Feed the new rows to the rolling windows, then bring the tables up to
+	 * date. Rows are timed by their arrival.
+	 */
+	@Override
+	public void resultsAppended(ResultIndex index, int fromRow){
+		long now=System.currentTimeMillis();
+		ReliabilityWindow.add(reliabilityWindows, index, fromRow, now);
+		
+		this.update(index.getSummary());
+		this.updateCurrentRates(now);
+	}
+	
+	/**
+	 * Show a saved run, its windows are built beforehand off the FX thread.
+	 * Its rows have no arrival time, the rate over the last seconds is left
+	 * blank.
+	 */
+	public void show(RunSummary summary, Map<String, ReliabilityWindow> windows){
+		reliabilityWindows.clear();
+		reliabilityWindows.putAll(windows);
+		
+		this.update(summary);
+		for(Map.Entry<String, ReliabilityWindow> window : reliabilityWindows.entrySet()){
+			ReliabilityEntry entry=reliabilityEntries.get(window.getKey());
+			if(entry!=null)
+				entry.setWindowFailRate(window.getValue().getFailRate());
+		}
+	}
+	
+	private void updateCurrentRates(long now){
+		for(Map.Entry<String, ReliabilityWindow> window : reliabilityWindows.entrySet()){
+			ReliabilityEntry entry=reliabilityEntries.get(window.getKey());
+			if(entry!=null)
+				entry.setCurrentRates(window.getValue().getFailRate(), window.getValue().getRecentFailRate(now));
+		}
+	}
+	
+	private void updateReliabilityData(RunSummary summary){
+		for (ServiceStatistics statistics : summary.getStatistics()) {
+			ReliabilityEntry entry=reliabilityEntries.get(statistics.getService());
+			if(entry==null){
+				entry=new ReliabilityEntry(statistics.getService());
+				reliabilityEntries.put(statistics.getService(), entry);
+				
+				ReliabilityEntry assistance=reliabilityEntries.get(ResultIndex.ASSISTANCE_SERVICE);
+				if(assistance!=null && assistance!=entry)
+					reliabilityData.add(reliabilityData.indexOf(assistance), entry);
+				else
 					reliabilityData.add(entry);
 			}
-			reliabilityData.add(reliabilityEntries.get("AssistanceService"));
+			entry.setInvocationNum(statistics.getInvocationNum());
+			entry.setFailNum(statistics.getFailNum());
+			entry.setRate();
 		}
-		catch(Exception e){
-			e.printStackTrace();
-		}
-		
-		
 	}
 	
 	public void generateCostTableView(){
@@ -142,104 +208,65 @@ public class TableViewController {
 	}
 	
 	
-	public void fillPerformanceData(String resultFilePath){
-		
-		Map<String,PerformanceEntry> performanceEntries=new HashMap<>();
-		
-		try{
-			BufferedReader br = new BufferedReader(new FileReader(resultFilePath));
-			String line;
-			String service;
-			boolean result;
-			while ((line = br.readLine()) != null) {
-				
-				String[] str=line.split(",");
-				
-				if(str.length>=3){					
-					service=str[1];
-					result=Boolean.parseBoolean(str[2]);					
-					
-					if(!service.equals("AssistanceService")){
-						
-						if(!performanceEntries.containsKey(service)){
-							performanceEntries.put(service, new PerformanceEntry(service));
-						}
-						PerformanceEntry reliabilityEntry=performanceEntries.get(service);
-
-						reliabilityEntry.setInvocationNum(reliabilityEntry.getInvocationNum()+1);
-						
-						if(result)
-							reliabilityEntry.addResponseTime(Double.parseDouble(str[5]));
-						else
-							reliabilityEntry.setFailNum(reliabilityEntry.getFailNum()+1);
-					}			
+	private void updatePerformanceData(RunSummary summary){
+		for (ServiceStatistics statistics : summary.getStatistics()) {
+			if(!statistics.getService().equals(ResultIndex.ASSISTANCE_SERVICE)){
+				PerformanceEntry entry=performanceEntries.get(statistics.getService());
+				if(entry==null){
+					entry=new PerformanceEntry(statistics.getService());
+					performanceEntries.put(statistics.getService(), entry);
+					performanceData.add(entry);
 				}
-			}
-			br.close();	
-			
-			for (PerformanceEntry entry : performanceEntries.values()) {
+				entry.setInvocationNum(statistics.getInvocationNum());
+				entry.setFailNum(statistics.getFailNum());
+				entry.setTotalResponseTime(statistics.getTotalResponseTime());
 				entry.setAvgResponseTime();
-				performanceData.add(entry);
+				entry.setLatency(statistics.getLatency());
 			}
 		}
-		catch(Exception e){
-			e.printStackTrace();
-		}
-		
 	}
 	
 	public void generateMockCostData(){
 		
 	}
 	
-	public void fillCostData(String resultFilePath){
-		Map<String,CostEntry> costEntries=new HashMap<>();
-		
-		try{
-			BufferedReader br = new BufferedReader(new FileReader(resultFilePath));
-			String line;
-			
-			String service;
-			boolean result;
-
-	        while ((line = br.readLine()) != null) {
-				String[] str=line.split(",");
-				if(str.length>=3){
-					service=str[1];
-					result=Boolean.parseBoolean(str[2]);
-					
-					if(result && !service.equals("AssistanceService")){
-						if(!costEntries.containsKey(service)){
-							costEntries.put(service, new CostEntry(service));
-						}
-						
-						CostEntry entry=costEntries.get(service);
-						entry.setInvocationNum(entry.getInvocationNum()+1);
-						entry.setTotalCost(entry.getTotalCost()+Double.parseDouble(str[3]));
-					}
+	private void updateCostData(RunSummary summary){
+		if(totalCostEntry==null){
+			totalCostEntry=new CostEntry("Total");
+			costData.add(totalCostEntry);
+		}
+		
+		int totalInvocations=0;
+		double totalCost=0;
+		
+		for (ServiceStatistics statistics : summary.getStatistics()) {
+			if(statistics.getSuccessNum()>0 && !statistics.getService().equals(ResultIndex.ASSISTANCE_SERVICE)){
+				CostEntry entry=costEntries.get(statistics.getService());
+				if(entry==null){
+					entry=new CostEntry(statistics.getService());
+					costEntries.put(statistics.getService(), entry);
+					costData.add(costData.size()-1, entry);
 				}
-			}
-			br.close();
-	
-			int totalInvocations=0;
-			double totalCost=0;
-			
-			for (CostEntry entry : costEntries.values()) {
+				entry.setInvocationNum(statistics.getSuccessNum());
+				entry.setTotalCost(statistics.getTotalCost());
 				totalInvocations=totalInvocations+entry.getInvocationNum();
 				totalCost=totalCost+entry.getTotalCost();
-				costData.add(entry);
 			}
-
-			costData.add(new CostEntry("Total",totalInvocations,totalCost));
-		}
-		catch(Exception e){
-			e.printStackTrace();
 		}
+
+		totalCostEntry.setInvocationNum(totalInvocations);
+		totalCostEntry.setTotalCost(totalCost);
 	}
 	
 	public void clear(){
 	    reliabilityData.clear();
 	    costData.clear();
 	    performanceData.clear();
+	    
+	    reliabilityEntries.clear();
+	    costEntries.clear();
+	    performanceEntries.clear();
+	    totalCostEntry=null;
+	    reliabilityWindows.clear();
 	}
 }